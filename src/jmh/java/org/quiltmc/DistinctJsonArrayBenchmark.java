@@ -0,0 +1,76 @@
+package org.quiltmc;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonPrimitive;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building a deduplicated version list with {@link DistinctJsonArray} against checking {@link
+ * JsonArray#contains} before every add, and against collecting into a {@link LinkedHashSet} and copying it into an
+ * array. One in four values repeats an earlier one, like game versions that have several mapping builds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class DistinctJsonArrayBenchmark {
+    @Param({"10000", "100000"})
+    public int versions;
+
+    private String[] values;
+
+    @Setup
+    public void setup() {
+        this.values = new String[this.versions];
+
+        for (int i = 0; i < this.versions; ++i) {
+            this.values[i] = i % 4 == 3 ? this.values[i / 2] : "1." + (i / 1000) + "." + (i % 1000);
+        }
+    }
+
+    @Benchmark
+    public JsonArray distinct() {
+        DistinctJsonArray array = new DistinctJsonArray();
+
+        for (String value : this.values) {
+            array.add(value);
+        }
+
+        return array.toJsonArray();
+    }
+
+    @Benchmark
+    public JsonArray linkedHashSetCopy() {
+        Collection<String> set = new LinkedHashSet<>();
+
+        for (String value : this.values) {
+            set.add(value);
+        }
+
+        JsonArray array = new JsonArray();
+        set.forEach(array::add);
+
+        return array;
+    }
+
+    @Benchmark
+    public JsonArray containsScan() {
+        JsonArray array = new JsonArray();
+
+        for (String value : this.values) {
+            JsonPrimitive element = new JsonPrimitive(value);
+
+            if (!array.contains(element)) {
+                array.add(element);
+            }
+        }
+
+        return array;
+    }
+}
@@ -0,0 +1,161 @@
+package org.quiltmc;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import javax.xml.stream.XMLStreamException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Synthetic versions shaped like the real game, mappings and loader metadata, at any scale.
+ */
+final class Fixtures {
+    static final String MAVEN_URL = "https://maven.quiltmc.org/repository/release/";
+    static final String FABRIC_URL = "https://maven.fabricmc.net/";
+
+    private Fixtures() {
+    }
+
+    static String gameVersion(int i) {
+        return i % 4 == 0 ? String.format("1.%d.%d", 14 + i / 40, i / 4 % 10) : String.format("%dw%02da", 19 + i / 52, i % 52 + 1);
+    }
+
+    static String loaderVersion(int i) {
+        return String.format("0.%d.%d", 14 + i / 20, i % 20);
+    }
+
+    /**
+     * @return {@code maven-metadata.xml} listing the given versions, oldest first
+     */
+    static byte[] mavenMetadata(String artifactId, String[] versions) {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<metadata>\n")
+                .append("  <groupId>org.quiltmc</groupId>\n  <artifactId>").append(artifactId).append("</artifactId>\n")
+                .append("  <versioning>\n    <versions>\n");
+
+        for (String version : versions) {
+            builder.append("      <version>").append(version).append("</version>\n");
+        }
+
+        builder.append("    </versions>\n    <lastUpdated>20221017120000</lastUpdated>\n  </versioning>\n</metadata>\n");
+
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return a Mojang version manifest with the given number of versions, newest first
+     */
+    static byte[] versionManifest(int games) {
+        JsonArray versions = new JsonArray();
+
+        for (int i = games - 1; i >= 0; --i) {
+            JsonObject version = new JsonObject();
+
+            version.addProperty("id", gameVersion(i));
+            version.addProperty("type", i % 4 == 0 ? "release" : "snapshot");
+            version.addProperty("url", "https://launchermeta.mojang.com/v1/packages/" + Hashing.md5(gameVersion(i)) + "/" + gameVersion(i) + ".json");
+            version.addProperty("time", "2022-10-17T12:00:00+00:00");
+            version.addProperty("releaseTime", "2022-10-17T12:00:00+00:00");
+            versions.add(version);
+        }
+
+        JsonObject latest = new JsonObject();
+        latest.addProperty("release", gameVersion(0));
+        latest.addProperty("snapshot", gameVersion(1));
+
+        JsonObject manifest = new JsonObject();
+        manifest.add("latest", latest);
+        manifest.add("versions", versions);
+
+        return manifest.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static MavenRepository.ArtifactMetadata hashed(int games) throws XMLStreamException {
+        String[] versions = new String[games];
+
+        for (int i = 0; i < games; ++i) {
+            versions[i] = gameVersion(i);
+        }
+
+        byte[] metadata = mavenMetadata("hashed", versions);
+
+        return new MavenRepository(MAVEN_URL, null).new ArtifactMetadata("org.quiltmc", "hashed",
+                MavenMetadataParser.parse(metadata), Hashing.md5(metadata));
+    }
+
+    static JsonArray games(int games) {
+        JsonArray array = new JsonArray();
+
+        for (int i = games - 1; i >= 0; --i) {
+            JsonObject object = new JsonObject();
+
+            object.addProperty("version", gameVersion(i));
+            object.addProperty("stable", i % 4 == 0);
+            array.add(object);
+        }
+
+        return array;
+    }
+
+    static Map<String, JsonObject> mappings(int games, String group, String name) {
+        Map<String, JsonObject> mappings = new HashMap<>();
+
+        for (int i = 0; i < games; ++i) {
+            JsonObject object = new JsonObject();
+
+            object.addProperty("maven", group + ":" + name + ":" + gameVersion(i));
+            object.addProperty("version", gameVersion(i));
+            mappings.put(gameVersion(i), object);
+        }
+
+        return mappings;
+    }
+
+    static JsonArray loaders(int loaders) {
+        JsonArray array = new JsonArray();
+
+        for (int i = loaders - 1; i >= 0; --i) {
+            JsonObject object = new JsonObject();
+
+            object.addProperty("separator", ".");
+            object.addProperty("build", i % 20);
+            object.addProperty("maven", "org.quiltmc:quilt-loader:" + loaderVersion(i));
+            object.addProperty("version", loaderVersion(i));
+            array.add(object);
+        }
+
+        return array;
+    }
+
+    static JsonObject launcherMeta(int loader) {
+        JsonArray common = new JsonArray();
+
+        for (int i = 0; i < 8; ++i) {
+            JsonObject library = new JsonObject();
+
+            library.addProperty("name", "org.quiltmc:library-" + i + ":0." + (loader % 10) + "." + i);
+            library.addProperty("url", MAVEN_URL);
+            common.add(library);
+        }
+
+        JsonObject libraries = new JsonObject();
+        libraries.add("client", new JsonArray());
+        libraries.add("common", common);
+        libraries.add("server", new JsonArray());
+
+        JsonObject mainClass = new JsonObject();
+        mainClass.addProperty("client", "org.quiltmc.loader.impl.launch.knot.KnotClient");
+        mainClass.addProperty("server", "org.quiltmc.loader.impl.launch.knot.KnotServer");
+        mainClass.addProperty("serverLauncher", "org.quiltmc.loader.impl.launch.server.QuiltServerLauncher");
+
+        JsonObject launcherMeta = new JsonObject();
+        launcherMeta.addProperty("version", 1);
+        launcherMeta.add("libraries", libraries);
+        launcherMeta.add("mainClass", mainClass);
+
+        return launcherMeta;
+    }
+}
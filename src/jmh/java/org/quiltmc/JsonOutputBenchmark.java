@@ -0,0 +1,62 @@
+package org.quiltmc;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes a loader version list, about the largest file uploaded per game version, straight into bytes and through
+ * an intermediate string.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JsonOutputBenchmark {
+    @Param({"50", "500"})
+    public int loaders;
+
+    @Param({"false", "true"})
+    public boolean compact;
+
+    private Gson gson;
+    private JsonOutput output;
+    private JsonArray versions;
+
+    @Setup
+    public void setup() {
+        this.gson = this.compact ? new Gson() : new GsonBuilder().setPrettyPrinting().create();
+        this.output = new JsonOutput(this.gson);
+        this.versions = new JsonArray();
+
+        JsonArray loaders = Fixtures.loaders(this.loaders);
+
+        for (int i = 0; i < this.loaders; ++i) {
+            JsonObject version = new JsonObject();
+
+            version.add("loader", loaders.get(i));
+            version.add("hashed", Fixtures.mappings(1, "org.quiltmc", "hashed").get(Fixtures.gameVersion(0)));
+            version.add("intermediary", Fixtures.mappings(1, "net.fabricmc", "intermediary").get(Fixtures.gameVersion(0)));
+            version.add("launcherMeta", Fixtures.launcherMeta(i));
+            this.versions.add(version);
+        }
+    }
+
+    @Benchmark
+    public byte[] toBytes() throws IOException {
+        return this.output.toBytes(this.versions);
+    }
+
+    @Benchmark
+    public byte[] viaString() {
+        return this.gson.toJson(this.versions).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,86 @@
+package org.quiltmc;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders the whole game by loader matrix the way a full regeneration does in {@code Meta.populateLoaderVersions} and
+ * {@code Meta.populateProfiles}, including building the fragments of every game and loader version.
+ *
+ * <p>Run with the {@code gc} profiler, as configured in the build, to see the allocation rate of the fan-out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class LoaderFilesBenchmark {
+    @Param({"100"})
+    public int games;
+
+    @Param({"50", "500"})
+    public int loaders;
+
+    @Param({"false", "true"})
+    public boolean compact;
+
+    private Gson gson;
+    private JsonArray gameArray;
+    private JsonArray loaderArray;
+    private Map<String, JsonObject> hashed;
+    private Map<String, JsonObject> intermediary;
+    private JsonObject[] launcherMeta;
+
+    @Setup
+    public void setup() {
+        this.gson = this.compact ? new Gson() : new GsonBuilder().setPrettyPrinting().create();
+        this.gameArray = Fixtures.games(this.games);
+        this.loaderArray = Fixtures.loaders(this.loaders);
+        this.hashed = Fixtures.mappings(this.games, "org.quiltmc", "hashed");
+        this.intermediary = Fixtures.mappings(this.games, "net.fabricmc", "intermediary");
+        this.launcherMeta = new JsonObject[this.loaders];
+
+        for (int i = 0; i < this.loaders; ++i) {
+            this.launcherMeta[i] = Fixtures.launcherMeta(this.loaders - 1 - i);
+        }
+    }
+
+    @Benchmark
+    public void matrix(Blackhole blackhole) {
+        LoaderFiles files = new LoaderFiles(this.gson, Fixtures.MAVEN_URL, Fixtures.FABRIC_URL, "2022-10-17T12:00:00+0000");
+        LoaderFiles.Loader[] loaders = new LoaderFiles.Loader[this.loaders];
+
+        for (int i = 0; i < this.loaders; ++i) {
+            loaders[i] = files.loader(this.loaderArray.get(i).getAsJsonObject(), this.launcherMeta[i]);
+        }
+
+        for (int i = 0; i < this.games; ++i) {
+            String version = this.gameArray.get(i).getAsJsonObject().get("version").getAsString();
+            LoaderFiles.Game game = files.game(version, this.hashed.get(version), this.intermediary.get(version));
+            List<LoaderFiles.Loader> list = new ArrayList<>(this.loaders);
+
+            for (LoaderFiles.Loader loader : loaders) {
+                list.add(loader);
+                blackhole.consume(files.loaderVersion(game, loader));
+            }
+
+            blackhole.consume(files.loaderVersions(game, list));
+
+            for (LoaderFiles.Side side : LoaderFiles.Side.values()) {
+                for (LoaderFiles.Loader loader : loaders) {
+                    blackhole.consume(files.profile(game, loader, side));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.quiltmc;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link MavenMetadataParser} with the per-call factory lookup and set copying it replaced, on metadata shaped
+ * like the quilt-mappings and intermediary files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MavenMetadataBenchmark {
+    @Param({"500", "5000", "50000"})
+    public int versions;
+
+    private byte[] contents;
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<metadata>\n")
+                .append("  <groupId>org.quiltmc</groupId>\n  <artifactId>quilt-mappings</artifactId>\n  <versioning>\n")
+                .append("    <latest>1.19.2+build.").append(this.versions).append("</latest>\n")
+                .append("    <release>1.19.2+build.").append(this.versions).append("</release>\n")
+                .append("    <versions>\n");
+
+        for (int i = 1; i <= this.versions; ++i) {
+            builder.append("      <version>1.19.2+build.").append(i).append("</version>\n");
+        }
+
+        builder.append("    </versions>\n    <lastUpdated>20221017120000</lastUpdated>\n  </versioning>\n</metadata>\n");
+
+        this.contents = builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Object parser() throws XMLStreamException {
+        return MavenMetadataParser.parse(this.contents);
+    }
+
+    @Benchmark
+    public Object legacy() throws XMLStreamException {
+        Collection<String> versions = new LinkedHashSet<>();
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new ByteArrayInputStream(this.contents));
+
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("version")) {
+                versions.add(reader.getElementText());
+            }
+        }
+
+        reader.close();
+        List<String> list = new ArrayList<>(versions);
+        Collections.reverse(list);
+        versions.clear();
+        versions.addAll(list);
+
+        return versions;
+    }
+}
@@ -0,0 +1,36 @@
+package org.quiltmc;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+
+import javax.xml.stream.XMLStreamException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filters the Mojang version manifest down to the game versions with hashed mojmap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MinecraftMetaBenchmark {
+    @Param({"700", "5000"})
+    public int games;
+
+    private final Gson gson = new Gson();
+    private MavenRepository.ArtifactMetadata hashed;
+    private byte[] manifest;
+
+    @Setup
+    public void setup() throws XMLStreamException {
+        this.hashed = Fixtures.hashed(this.games);
+        this.manifest = Fixtures.versionManifest(this.games);
+    }
+
+    @Benchmark
+    public Object get() {
+        return MinecraftMeta.get(this.hashed, this.gson, this.manifest);
+    }
+}
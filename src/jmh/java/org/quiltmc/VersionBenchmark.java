@@ -0,0 +1,95 @@
+package org.quiltmc;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.xml.stream.XMLStreamException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading the parts of quilt-mappings and loader versions through {@link Version} and the coordinates cached
+ * on {@link MavenRepository.ArtifactMetadata.Artifact} with the string operations and formatting they replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VersionBenchmark {
+    private static final String GROUP = "org.quiltmc";
+    private static final String NAME = "quilt-mappings";
+    private static final String URL = "https://maven.quiltmc.org/repository/release/";
+
+    @Param({"1000", "10000"})
+    public int versions;
+
+    private String[] strings;
+    private MavenRepository.ArtifactMetadata metadata;
+
+    @Setup
+    public void setup() throws XMLStreamException {
+        StringBuilder builder = new StringBuilder("<metadata><versioning><versions>");
+
+        this.strings = new String[this.versions];
+
+        for (int i = 0; i < this.versions; ++i) {
+            this.strings[i] = i % 10 == 0 ? "1.18." + (i % 3) + "." + i : "1.19." + (i % 5) + "+build." + i;
+            builder.append("<version>").append(this.strings[this.versions - 1 - i]).append("</version>");
+        }
+
+        builder.append("</versions></versioning></metadata>");
+
+        MavenMetadataParser.Metadata parsed = MavenMetadataParser.parse(builder.toString().getBytes(StandardCharsets.UTF_8));
+
+        this.metadata = new MavenRepository(URL, null).new ArtifactMetadata(GROUP, NAME, parsed, null);
+    }
+
+    /**
+     * Parses every version and builds its coordinates, as loading the metadata does once per run.
+     */
+    @Benchmark
+    public Object load() {
+        MavenMetadataParser.Metadata parsed = this.metadata.metadata;
+
+        return new MavenRepository(URL, null).new ArtifactMetadata(GROUP, NAME, parsed, null);
+    }
+
+    /**
+     * Reads what populateQuiltMappings and populateInstaller write for every version from the cached parts.
+     */
+    @Benchmark
+    public void cached(Blackhole blackhole) {
+        for (MavenRepository.ArtifactMetadata.Artifact artifact : this.metadata) {
+            blackhole.consume(artifact.parsed.withoutBuild);
+            blackhole.consume(artifact.parsed.separator);
+            blackhole.consume(artifact.parsed.build);
+            blackhole.consume(artifact.mavenId());
+            blackhole.consume(artifact.url());
+        }
+    }
+
+    /**
+     * Computes the same strings the way populateQuiltMappings and Artifact did before.
+     */
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        for (String version : this.strings) {
+            blackhole.consume(stripInfo(version));
+            blackhole.consume(version.contains("+build.") ? "+build." : ".");
+            blackhole.consume(Integer.parseInt(version.substring(version.lastIndexOf(".") + 1)));
+            blackhole.consume(String.format("%s:%s:%s", GROUP, NAME, version));
+            blackhole.consume(String.format("%s%s/%s/%s/%s-%s.jar", URL, GROUP.replaceAll("\\.", "/"), NAME, version, NAME, version));
+        }
+    }
+
+    private static String stripInfo(String version) {
+        if (version.contains("+build.")) {
+            return version.substring(0, version.lastIndexOf('+'));
+        } else {
+            char verSep = version.contains("-") ? '-' : '.';
+            return version.substring(0, version.lastIndexOf(verSep));
+        }
+    }
+}
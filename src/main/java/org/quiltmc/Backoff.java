@@ -0,0 +1,23 @@
+package org.quiltmc;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Delays between retries of requests to remote services.
+ */
+public final class Backoff {
+    private Backoff() {
+    }
+
+    /**
+     * Full jitter, a random delay up to an exponentially growing cap, so clients that failed together don't retry
+     * together.
+     *
+     * @param attempt the attempt that failed, starting at 1
+     */
+    public static long delay(int attempt, long baseMillis, long maxMillis) {
+        long cap = Math.min(maxMillis, baseMillis << Math.min(attempt - 1, 16));
+
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+}
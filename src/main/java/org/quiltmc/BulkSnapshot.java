@@ -0,0 +1,585 @@
+package org.quiltmc;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The whole version graph in one file, so mirrors can sync with one request instead of crawling {@code v3/versions}.
+ *
+ * <p>The graph is a list of records, each an element of one of the version lists or the launcher meta of a loader
+ * build, identified by its type and maven coordinate or version. Records keep the order of the lists they come from.
+ * A snapshot is published as newline-delimited JSON and in a compact binary encoding, named by the hash of the JSON.
+ * Between runs, a delta lists the records that were added, changed or removed.
+ *
+ * <p>Every JSON line is an object with a {@code type}, an {@code id} and a {@code value}. Deltas hold {@code put}
+ * and {@code remove} operations, then the full order of every type whose records were added, removed or reordered.
+ */
+public class BulkSnapshot {
+    public static final String PREFIX = "v3/snapshot/";
+    public static final String LATEST = PREFIX + "latest.json";
+    /**
+     * Bumped whenever the encoding of snapshots or deltas changes.
+     */
+    static final int FORMAT = 1;
+    /**
+     * The types of records, in the order they are written.
+     */
+    static final String[] TYPES = {"game", "hashed", "intermediary", "mappings", "loader", "launcherMeta", "installer"};
+    static final String STATE_KEY = "snapshot/history.json";
+    static final String RECORDS_KEY = "snapshot/latest.ndjson";
+
+    private static final Gson GSON = new Gson();
+    private static final byte[] MAGIC = {'Q', 'M', 'S', FORMAT};
+    private static final int MAX_DELTAS = 32;
+    /**
+     * Tags of the values in the binary encoding.
+     */
+    private static final int NULL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int STRING = 3;
+    private static final int INTEGER = 4;
+    private static final int DECIMAL = 5;
+    private static final int ARRAY = 6;
+    private static final int OBJECT = 7;
+
+    final List<Record> records;
+    final byte[] ndjson;
+    final String hash;
+
+    BulkSnapshot(List<Record> records) {
+        this.records = records;
+        this.ndjson = toNdjson(records);
+        this.hash = Hashing.md5(this.ndjson);
+    }
+
+    /**
+     * Collects the records of a run from the outputs of the populate stages and the launcher meta of its loaders.
+     */
+    public static BulkSnapshot build(Map<String, JsonArray> arrays, LauncherMetaCache launcherMeta) {
+        List<Record> records = new ArrayList<>();
+
+        for (String type : TYPES) {
+            JsonArray array = arrays.get(type.equals("launcherMeta") ? "loader" : type);
+
+            if (array == null) {
+                continue;
+            }
+
+            for (JsonElement element : array) {
+                JsonObject object = element.getAsJsonObject();
+                String id = object.has("maven") ? object.get("maven").getAsString() : object.get("version").getAsString();
+
+                records.add(new Record(type, id, type.equals("launcherMeta") ? launcherMeta.get(id) : object));
+            }
+        }
+
+        return new BulkSnapshot(records);
+    }
+
+    public static BulkSnapshot fromNdjson(byte[] ndjson) throws IOException {
+        List<Record> records = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(ndjson), StandardCharsets.UTF_8));
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+            if (!line.isEmpty()) {
+                JsonObject object = JsonParser.parseString(line).getAsJsonObject();
+
+                records.add(new Record(object.get("type").getAsString(), object.get("id").getAsString(), object.get("value")));
+            }
+        }
+
+        return new BulkSnapshot(records);
+    }
+
+    /**
+     * Writes one record per line, streaming each value instead of building a document around them.
+     */
+    private static byte[] toNdjson(List<Record> records) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+
+        try {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+
+            for (Record record : records) {
+                JsonWriter json = GSON.newJsonWriter(writer);
+
+                json.beginObject();
+                json.name("type").value(record.type);
+                json.name("id").value(record.id);
+                json.name("value");
+                GSON.toJson(record.value == null ? JsonNull.INSTANCE : record.value, json);
+                json.endObject();
+                json.flush();
+                writer.write('\n');
+            }
+
+            writer.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes the records with every string stored once and referenced by index, which shrinks the many repeated
+     * maven coordinates, versions and library URLs.
+     *
+     * <p>After the magic bytes come the string table and the records, each a type, an id and a tagged value. Counts,
+     * lengths, indexes and integers are unsigned LEB128 varints, integers zigzag encoded first.
+     */
+    public byte[] toBinary() {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+
+        for (Record record : this.records) {
+            intern(strings, record.type);
+            intern(strings, record.id);
+            collectStrings(strings, record.value);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(this.ndjson.length / 2);
+
+        out.write(MAGIC, 0, MAGIC.length);
+        writeVarint(out, strings.size());
+
+        for (String string : strings.keySet()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+
+            writeVarint(out, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        writeVarint(out, this.records.size());
+
+        for (Record record : this.records) {
+            writeVarint(out, strings.get(record.type));
+            writeVarint(out, strings.get(record.id));
+            writeValue(out, strings, record.value);
+        }
+
+        return out.toByteArray();
+    }
+
+    public static BulkSnapshot fromBinary(byte[] binary) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(binary));
+        byte[] magic = new byte[MAGIC.length];
+
+        in.readFully(magic);
+
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a version " + FORMAT + " snapshot");
+        }
+
+        String[] strings = new String[(int) readVarint(in)];
+
+        for (int i = 0; i < strings.length; ++i) {
+            byte[] bytes = new byte[(int) readVarint(in)];
+
+            in.readFully(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int count = (int) readVarint(in);
+        List<Record> records = new ArrayList<>(count);
+
+        for (int i = 0; i < count; ++i) {
+            String type = strings[(int) readVarint(in)];
+            String id = strings[(int) readVarint(in)];
+
+            records.add(new Record(type, id, readValue(in, strings)));
+        }
+
+        return new BulkSnapshot(records);
+    }
+
+    /**
+     * @return the operations turning a previous snapshot into this one, as newline-delimited JSON
+     */
+    public byte[] delta(BulkSnapshot previous) {
+        Map<String, JsonElement> before = new HashMap<>();
+        Map<String, List<String>> beforeOrder = order(previous.records);
+        Map<String, List<String>> afterOrder = order(this.records);
+        Set<String> after = new HashSet<>();
+        List<JsonObject> operations = new ArrayList<>();
+
+        for (Record record : previous.records) {
+            before.put(record.key(), record.value);
+        }
+
+        for (Record record : this.records) {
+            after.add(record.key());
+
+            if (!before.containsKey(record.key()) || !Objects.equals(before.get(record.key()), record.value)) {
+                JsonObject put = operation("put", record.type);
+                put.addProperty("id", record.id);
+                put.add("value", record.value);
+                operations.add(put);
+            }
+        }
+
+        for (Record record : previous.records) {
+            if (!after.contains(record.key())) {
+                JsonObject remove = operation("remove", record.type);
+                remove.addProperty("id", record.id);
+                operations.add(remove);
+            }
+        }
+
+        for (String type : TYPES) {
+            List<String> ids = afterOrder.getOrDefault(type, Collections.emptyList());
+
+            if (!ids.equals(beforeOrder.getOrDefault(type, Collections.emptyList()))) {
+                JsonObject order = operation("order", type);
+                JsonArray array = new JsonArray();
+                ids.forEach(array::add);
+                order.add("ids", array);
+                operations.add(order);
+            }
+        }
+
+        StringBuilder builder = new StringBuilder();
+        JsonObject header = new JsonObject();
+
+        header.addProperty("format", FORMAT);
+        header.addProperty("from", previous.hash);
+        header.addProperty("to", this.hash);
+        builder.append(header).append('\n');
+
+        for (JsonObject operation : operations) {
+            builder.append(operation).append('\n');
+        }
+
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Applies a delta made by {@link #delta(BulkSnapshot)} to the snapshot it was made from.
+     */
+    public BulkSnapshot apply(byte[] delta) throws IOException {
+        Map<String, Record> records = new HashMap<>();
+        Map<String, List<String>> order = order(this.records);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(delta), StandardCharsets.UTF_8));
+        JsonObject header = JsonParser.parseString(reader.readLine()).getAsJsonObject();
+        String line;
+
+        if (!this.hash.equals(header.get("from").getAsString())) {
+            throw new IOException("Delta from " + header.get("from").getAsString() + " doesn't apply to " + this.hash);
+        }
+
+        for (Record record : this.records) {
+            records.put(record.key(), record);
+        }
+
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            JsonObject operation = JsonParser.parseString(line).getAsJsonObject();
+            String type = operation.get("type").getAsString();
+
+            switch (operation.get("op").getAsString()) {
+                case "put": {
+                    String id = operation.get("id").getAsString();
+                    records.put(type + '/' + id, new Record(type, id, operation.get("value")));
+                    break;
+                }
+                case "remove":
+                    records.remove(type + '/' + operation.get("id").getAsString());
+                    break;
+                case "order": {
+                    List<String> ids = new ArrayList<>();
+                    operation.get("ids").getAsJsonArray().forEach(id -> ids.add(id.getAsString()));
+                    order.put(type, ids);
+                    break;
+                }
+                default:
+                    throw new IOException("Unknown operation " + operation.get("op"));
+            }
+        }
+
+        List<Record> result = new ArrayList<>();
+
+        for (String type : TYPES) {
+            for (String id : order.getOrDefault(type, Collections.emptyList())) {
+                result.add(records.get(type + '/' + id));
+            }
+        }
+
+        return new BulkSnapshot(result);
+    }
+
+    /**
+     * @return what mirrors read first: the hash of the current snapshot, where to find it, and the hashes of the
+     * earlier snapshots that have a delta
+     */
+    public JsonObject latest(List<String> deltas) {
+        JsonObject latest = new JsonObject();
+        JsonArray from = new JsonArray();
+
+        deltas.forEach(from::add);
+        latest.addProperty("format", FORMAT);
+        latest.addProperty("hash", this.hash);
+        latest.addProperty("records", this.records.size());
+        latest.addProperty("ndjson", ndjsonKey(this.hash));
+        latest.addProperty("binary", binaryKey(this.hash));
+        latest.add("deltas", from);
+
+        return latest;
+    }
+
+    public static String ndjsonKey(String hash) {
+        return PREFIX + hash + ".ndjson";
+    }
+
+    public static String binaryKey(String hash) {
+        return PREFIX + hash + ".bin";
+    }
+
+    /**
+     * @return the delta from the snapshot with the given hash to the one after it
+     */
+    public static String deltaKey(String from) {
+        return PREFIX + "deltas/" + from + ".ndjson";
+    }
+
+    private static JsonObject operation(String op, String type) {
+        JsonObject operation = new JsonObject();
+
+        operation.addProperty("op", op);
+        operation.addProperty("type", type);
+
+        return operation;
+    }
+
+    private static Map<String, List<String>> order(List<Record> records) {
+        Map<String, List<String>> order = new HashMap<>();
+
+        for (Record record : records) {
+            order.computeIfAbsent(record.type, t -> new ArrayList<>()).add(record.id);
+        }
+
+        return order;
+    }
+
+    private static void intern(Map<String, Integer> strings, String string) {
+        strings.putIfAbsent(string, strings.size());
+    }
+
+    private static void collectStrings(Map<String, Integer> strings, JsonElement element) {
+        if (element == null || element.isJsonNull()) {
+            return;
+        }
+
+        if (element.isJsonArray()) {
+            for (JsonElement item : element.getAsJsonArray()) {
+                collectStrings(strings, item);
+            }
+        } else if (element.isJsonObject()) {
+            for (Map.Entry<String, JsonElement> member : element.getAsJsonObject().entrySet()) {
+                intern(strings, member.getKey());
+                collectStrings(strings, member.getValue());
+            }
+        } else if (element.getAsJsonPrimitive().isString()) {
+            intern(strings, element.getAsString());
+        }
+    }
+
+    private static void writeValue(ByteArrayOutputStream out, Map<String, Integer> strings, JsonElement element) {
+        if (element == null || element.isJsonNull()) {
+            out.write(NULL);
+        } else if (element.isJsonArray()) {
+            out.write(ARRAY);
+            writeVarint(out, element.getAsJsonArray().size());
+
+            for (JsonElement item : element.getAsJsonArray()) {
+                writeValue(out, strings, item);
+            }
+        } else if (element.isJsonObject()) {
+            out.write(OBJECT);
+            writeVarint(out, element.getAsJsonObject().size());
+
+            for (Map.Entry<String, JsonElement> member : element.getAsJsonObject().entrySet()) {
+                writeVarint(out, strings.get(member.getKey()));
+                writeValue(out, strings, member.getValue());
+            }
+        } else {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+
+            if (primitive.isBoolean()) {
+                out.write(primitive.getAsBoolean() ? TRUE : FALSE);
+            } else if (primitive.isString()) {
+                out.write(STRING);
+                writeVarint(out, strings.get(primitive.getAsString()));
+            } else if (isInteger(primitive)) {
+                long value = primitive.getAsLong();
+
+                out.write(INTEGER);
+                writeVarint(out, (value << 1) ^ (value >> 63));
+            } else {
+                long bits = Double.doubleToLongBits(primitive.getAsDouble());
+
+                out.write(DECIMAL);
+
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    out.write((int) (bits >>> shift));
+                }
+            }
+        }
+    }
+
+    private static JsonElement readValue(DataInputStream in, String[] strings) throws IOException {
+        int tag = in.readUnsignedByte();
+
+        switch (tag) {
+            case NULL:
+                return JsonNull.INSTANCE;
+            case FALSE:
+                return new JsonPrimitive(false);
+            case TRUE:
+                return new JsonPrimitive(true);
+            case STRING:
+                return new JsonPrimitive(strings[(int) readVarint(in)]);
+            case INTEGER: {
+                long value = readVarint(in);
+                return new JsonPrimitive((value >>> 1) ^ -(value & 1));
+            }
+            case DECIMAL:
+                return new JsonPrimitive(in.readDouble());
+            case ARRAY: {
+                int size = (int) readVarint(in);
+                JsonArray array = new JsonArray();
+
+                for (int i = 0; i < size; ++i) {
+                    array.add(readValue(in, strings));
+                }
+
+                return array;
+            }
+            case OBJECT: {
+                int size = (int) readVarint(in);
+                JsonObject object = new JsonObject();
+
+                for (int i = 0; i < size; ++i) {
+                    String name = strings[(int) readVarint(in)];
+                    object.add(name, readValue(in, strings));
+                }
+
+                return object;
+            }
+            default:
+                throw new IOException("Unknown tag " + tag);
+        }
+    }
+
+    private static boolean isInteger(JsonPrimitive primitive) {
+        try {
+            Long.parseLong(primitive.getAsString());
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        out.write((int) value);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+
+            value |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    static class Record {
+        final String type;
+        final String id;
+        final JsonElement value;
+
+        Record(String type, String id, JsonElement value) {
+            this.type = type;
+            this.id = id;
+            this.value = value;
+        }
+
+        String key() {
+            return this.type + '/' + this.id;
+        }
+    }
+
+    /**
+     * The snapshots published by earlier runs, kept in the {@link StateStore} to make deltas against.
+     */
+    public static class History {
+        String hash;
+        /**
+         * The hashes of the earlier snapshots that have a delta published, oldest first.
+         */
+        List<String> deltas = new ArrayList<>();
+
+        public static History read(StateStore state) throws IOException {
+            byte[] contents = state.read(STATE_KEY);
+            History history = contents == null ? null : GSON.fromJson(new String(contents, StandardCharsets.UTF_8), History.class);
+
+            return history == null ? new History() : history;
+        }
+
+        /**
+         * @return the records of the snapshot the history is at, or null if they are missing or were written by a run
+         * that failed before writing the history after them
+         */
+        public BulkSnapshot readPrevious(StateStore state) throws IOException {
+            byte[] contents = this.hash == null ? null : state.read(RECORDS_KEY);
+
+            return contents == null || !this.hash.equals(Hashing.md5(contents)) ? null : fromNdjson(contents);
+        }
+
+        /**
+         * Moves on to a new snapshot, keeping a bounded number of deltas.
+         */
+        void advance(String previous, String hash) {
+            if (previous != null && !previous.equals(hash)) {
+                this.deltas.add(previous);
+            }
+
+            while (this.deltas.size() > MAX_DELTAS) {
+                this.deltas.remove(0);
+            }
+
+            this.hash = hash;
+        }
+
+        /**
+         * Writes the records, then the history once they are written, which {@link #readPrevious} checks them against.
+         */
+        public void write(StateStore state, BulkSnapshot snapshot) throws IOException {
+            state.write(RECORDS_KEY, snapshot.ndjson);
+            state.write(STATE_KEY, GSON.toJson(this).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.quiltmc;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Settings of the handler, read from the environment of the Lambda function.
+ */
+public class Config {
+    public final boolean compact;
+    public final String mavenUrl;
+    public final String fabricUrl;
+    public final String minecraftManifestUrl;
+    public final String group;
+    public final String loader;
+    public final String installer;
+    public final String bucket;
+    /**
+     * Where to keep state between runs on local disk, or null to keep it in the bucket.
+     */
+    public final String stateDir;
+    public final boolean incremental;
+    /**
+     * Keeps immutable fetched data in memory for the next invocation in the same container.
+     */
+    public final boolean warmCache;
+    public final Publisher.Diff uploadDiff;
+    public final int uploadConcurrency;
+    public final int fetchConcurrency;
+    public final int fetchConcurrencyPerHost;
+    public final OutputEncoding encoding;
+    /**
+     * Publishes a {@link ProfileIndex} for {@link ProfileHandler} to render profiles from, instead of every profile.
+     */
+    public final boolean lazyProfiles;
+    /**
+     * The largest fraction of the files under {@code v3/} a run may delete, the run fails instead of deleting more.
+     */
+    public final double maxDeleteFraction;
+    /**
+     * The CloudWatch namespace of the metrics logged at the end of every run.
+     */
+    public final String metricsNamespace;
+
+    public Config(Map<String, String> environment) {
+        this.compact = Boolean.parseBoolean(environment.get("META_COMPACT"));
+        this.mavenUrl = environment.get("META_MAVEN_URL");
+        this.fabricUrl = environment.getOrDefault("META_FABRIC_URL", "https://maven.fabricmc.net/");
+        this.minecraftManifestUrl = environment.getOrDefault("META_MINECRAFT_MANIFEST_URL", MinecraftMeta.MANIFEST);
+        this.group = environment.get("META_GROUP");
+        this.loader = environment.get("META_LOADER");
+        this.installer = environment.get("META_INSTALLER");
+        this.bucket = environment.get("META_BUCKET");
+        this.stateDir = environment.get("META_STATE_DIR");
+        this.incremental = Boolean.parseBoolean(environment.get("META_INCREMENTAL"));
+        this.warmCache = Boolean.parseBoolean(environment.get("META_WARM_CACHE"));
+        this.uploadDiff = Publisher.Diff.fromString(environment.get("META_UPLOAD_DIFF"));
+        this.uploadConcurrency = Integer.parseInt(environment.getOrDefault("META_UPLOAD_CONCURRENCY", "64"));
+        this.fetchConcurrency = Integer.parseInt(environment.getOrDefault("META_FETCH_CONCURRENCY", "16"));
+        this.fetchConcurrencyPerHost = Integer.parseInt(environment.getOrDefault("META_FETCH_CONCURRENCY_PER_HOST", "8"));
+        this.encoding = OutputEncoding.fromEnvironment(environment);
+        this.lazyProfiles = Boolean.parseBoolean(environment.get("META_LAZY_PROFILES"));
+        this.maxDeleteFraction = Double.parseDouble(environment.getOrDefault("META_MAX_DELETE_FRACTION", "1"));
+        this.metricsNamespace = environment.getOrDefault("META_METRICS_NAMESPACE", "QuiltMeta");
+    }
+
+    public static Config fromEnvironment() {
+        return new Config(System.getenv());
+    }
+}
@@ -0,0 +1,39 @@
+package org.quiltmc;
+
+import com.google.gson.JsonArray;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Collects strings into a {@link JsonArray} in the order they are first added, dropping repeats with a hash lookup
+ * rather than scanning the array, so building a list of n versions takes O(n) instead of O(n^2).
+ */
+public class DistinctJsonArray {
+    private final Set<String> seen = new HashSet<>();
+    private final JsonArray array = new JsonArray();
+
+    /**
+     * @return whether the value was added, false if it already was
+     */
+    public boolean add(String value) {
+        if (!this.seen.add(value)) {
+            return false;
+        }
+
+        this.array.add(value);
+
+        return true;
+    }
+
+    public int size() {
+        return this.array.size();
+    }
+
+    /**
+     * @return the collected values, the array itself rather than a copy
+     */
+    public JsonArray toJsonArray() {
+        return this.array;
+    }
+}
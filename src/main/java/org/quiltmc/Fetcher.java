@@ -0,0 +1,38 @@
+package org.quiltmc;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Where the maven metadata, launcher meta and Mojang version manifest are read from.
+ */
+public interface Fetcher {
+    byte[] get(String url) throws IOException;
+
+    CompletableFuture<byte[]> getAsync(String url);
+
+    /**
+     * Fetches a file the caller caches on its own, such as immutable launcher meta, so it needn't be cached twice.
+     */
+    default CompletableFuture<byte[]> getAsyncUncached(String url) {
+        return this.getAsync(url);
+    }
+
+    /**
+     * Called at the start of every run, before anything is fetched.
+     */
+    default void load() throws IOException {
+    }
+
+    /**
+     * Called once a run has succeeded.
+     */
+    default void save() throws IOException {
+    }
+
+    /**
+     * Adds the requests made during the run to its metrics.
+     */
+    default void report(Metrics metrics) {
+    }
+}
@@ -0,0 +1,386 @@
+package org.quiltmc;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fetches files over HTTP, remembering the {@code ETag} and {@code Last-Modified} of every response so that later
+ * runs can make conditional requests and serve unchanged files from the {@link StateStore}.
+ *
+ * <p>Every fetch in the project goes through here, so the limit on concurrent requests to each host holds no matter
+ * how many stages are fetching at once.
+ */
+public class HttpFetcher implements Fetcher {
+    private static final String INDEX = "http/index.json";
+    private static final Gson GSON = new Gson();
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+    private static final int READ_TIMEOUT_MILLIS = 30_000;
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long BASE_DELAY_MILLIS = 250;
+    private static final long MAX_DELAY_MILLIS = 5_000;
+    /**
+     * Fetch pools by size, shared by every fetcher in the container so warm invocations reuse their threads.
+     */
+    private static final Map<Integer, ExecutorService> EXECUTORS = new ConcurrentHashMap<>();
+
+    private final StateStore store;
+    private final boolean warm;
+    private final int maxPerHost;
+    private final ExecutorService executor;
+    private final Map<String, Semaphore> hosts = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private final AtomicInteger retries = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    /**
+     * Bodies by their key in the store, kept across runs when warm.
+     */
+    private final Map<String, byte[]> bodies = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+    private boolean loaded;
+
+    /**
+     * @param warm           whether the index and the response bodies stay in memory for the next run in the same
+     *                       container, instead of being read back from the store
+     * @param maxConcurrency the most requests made at once by {@link #getAsync}
+     * @param maxPerHost     the most requests made at once to any one host
+     */
+    public HttpFetcher(StateStore store, boolean warm, int maxConcurrency, int maxPerHost) {
+        this.store = store;
+        this.warm = warm;
+        this.maxPerHost = maxPerHost;
+        this.executor = EXECUTORS.computeIfAbsent(maxConcurrency, size -> Executors.newFixedThreadPool(size, new NamedThreadFactory("http-fetch")));
+    }
+
+    @Override
+    public void load() throws IOException {
+        this.requests.set(0);
+        this.notModified.set(0);
+        this.retries.set(0);
+        this.bytes.set(0);
+
+        if (this.warm && this.loaded) {
+            return;
+        }
+
+        byte[] index = this.store.read(INDEX);
+
+        this.bodies.clear();
+
+        this.entries.clear();
+        this.dirty = false;
+
+        if (index != null) {
+            Map<String, Entry> entries = GSON.fromJson(new String(index, StandardCharsets.UTF_8), new TypeToken<Map<String, Entry>>() {}.getType());
+
+            if (entries != null) {
+                this.entries.putAll(entries);
+            }
+        }
+
+        this.loaded = true;
+    }
+
+    @Override
+    public void save() throws IOException {
+        System.out.printf("Fetched %d files, %d not modified, with %d retries%n",
+                this.requests.get(), this.notModified.get(), this.retries.get());
+
+        if (this.dirty) {
+            this.store.write(INDEX, GSON.toJson(this.entries).getBytes(StandardCharsets.UTF_8));
+            this.dirty = false;
+        }
+    }
+
+    @Override
+    public void report(Metrics metrics) {
+        metrics.count("fetch.requests", this.requests.get());
+        metrics.count("fetch.notModified", this.notModified.get());
+        metrics.count("fetch.retries", this.retries.get());
+        metrics.bytes("fetch.bytes", this.bytes.get());
+    }
+
+    public Reader getReader(String url) throws IOException {
+        return new InputStreamReader(new ByteArrayInputStream(this.get(url)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Fetches a file on the fetch pool, which is sized to the total concurrency limit.
+     */
+    @Override
+    public CompletableFuture<byte[]> getAsync(String url) {
+        return this.getAsync(url, true);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> getAsyncUncached(String url) {
+        return this.getAsync(url, false);
+    }
+
+    private CompletableFuture<byte[]> getAsync(String url, boolean cache) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return cache ? this.get(url) : this.get(url, null, false);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }, this.executor);
+    }
+
+    @Override
+    public byte[] get(String url) throws IOException {
+        Entry entry = this.entries.get(url);
+
+        if (entry != null) {
+            byte[] body = this.get(url, entry, true);
+
+            if (body != null) {
+                return body;
+            }
+        }
+
+        return this.get(url, null, true);
+    }
+
+    /**
+     * @param cache whether to remember the response for conditional requests, storing its body
+     * @return the body of the response, or null if the server reported it unchanged but the cached copy is gone
+     */
+    private byte[] get(String url, Entry entry, boolean cache) throws IOException {
+        Response response = this.request(url, entry);
+
+        this.requests.incrementAndGet();
+
+        if (response.code == HttpURLConnection.HTTP_NOT_MODIFIED && entry != null) {
+            this.notModified.incrementAndGet();
+            return this.readBody(entry);
+        }
+
+        byte[] body = response.body;
+
+        this.bytes.addAndGet(body.length);
+
+        if (cache && (response.etag != null || response.lastModified != null)) {
+            Entry updated = new Entry(response.etag, response.lastModified, "http/" + Hashing.md5(url), Hashing.md5(body));
+
+            if (!updated.equals(entry)) {
+                // Bodies are stored by their URL, so a changed body replaces the one before it instead of piling up
+                if (entry == null || !updated.body.equals(entry.body) || !updated.hash.equals(entry.hash)) {
+                    this.store.write(updated.body, body);
+                }
+
+                if (this.warm) {
+                    if (entry != null) {
+                        this.bodies.remove(entry.body);
+                    }
+
+                    this.bodies.put(updated.body, body);
+                }
+
+                this.entries.put(url, updated);
+                this.dirty = true;
+            }
+        }
+
+        return body;
+    }
+
+    /**
+     * Makes a request while holding one of its host's permits, retrying failed connections, throttling and server
+     * errors with backoff. The permit is released while waiting to retry.
+     */
+    private Response request(String url, Entry entry) throws IOException {
+        Semaphore host = this.hosts.computeIfAbsent(new URL(url).getHost(), name -> new Semaphore(this.maxPerHost));
+
+        for (int attempt = 1; ; ++attempt) {
+            try {
+                host.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting to fetch " + url);
+            }
+
+            try {
+                return this.connect(url, entry);
+            } catch (IOException e) {
+                if (attempt >= MAX_ATTEMPTS || (e instanceof StatusException && !((StatusException) e).retryable)) {
+                    throw e;
+                }
+
+                this.retries.incrementAndGet();
+            } finally {
+                host.release();
+            }
+
+            try {
+                Thread.sleep(Backoff.delay(attempt, BASE_DELAY_MILLIS, MAX_DELAY_MILLIS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting to retry " + url);
+            }
+        }
+    }
+
+    /**
+     * Reads the whole response and closes its stream, leaving the connection to the keep-alive pool.
+     */
+    private Response connect(String url, Entry entry) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+
+        if (entry != null && entry.etag != null) {
+            connection.setRequestProperty("If-None-Match", entry.etag);
+        }
+
+        if (entry != null && entry.lastModified != null) {
+            connection.setRequestProperty("If-Modified-Since", entry.lastModified);
+        }
+
+        try {
+            int code = connection.getResponseCode();
+
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && entry != null) {
+                discard(connection.getErrorStream());
+                return new Response(code, null, null, null);
+            }
+
+            if (code != HttpURLConnection.HTTP_OK) {
+                discard(connection.getErrorStream());
+                throw new StatusException(code, url);
+            }
+
+            try (InputStream stream = connection.getInputStream()) {
+                return new Response(code, readFully(stream), connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+            }
+        } catch (StatusException e) {
+            throw e;
+        } catch (IOException e) {
+            // The connection is in an unknown state, don't let it go back to the pool
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads what's left of an error response, a connection can only be reused once its response is fully read.
+     */
+    private static void discard(InputStream stream) throws IOException {
+        if (stream != null) {
+            try (InputStream closed = stream) {
+                byte[] buffer = new byte[8192];
+
+                while (closed.read(buffer) != -1) {
+                    // Drain
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the stored body of an entry, or null if it's missing or was overwritten by a run that didn't save the
+     * index after it
+     */
+    private byte[] readBody(Entry entry) throws IOException {
+        byte[] body = this.bodies.get(entry.body);
+
+        if (body == null) {
+            body = this.store.read(entry.body);
+
+            if (body != null && entry.hash != null && !entry.hash.equals(Hashing.md5(body))) {
+                return null;
+            }
+
+            if (body != null && this.warm) {
+                this.bodies.put(entry.body, body);
+            }
+        }
+
+        return body;
+    }
+
+    static byte[] readFully(InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+
+        while ((read = stream.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+
+        return out.toByteArray();
+    }
+
+    private static class Response {
+        final int code;
+        final byte[] body;
+        final String etag;
+        final String lastModified;
+
+        Response(int code, byte[] body, String etag, String lastModified) {
+            this.code = code;
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static class StatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        final boolean retryable;
+
+        StatusException(int code, String url) {
+            super(String.format("Unexpected response %d from %s", code, url));
+            this.retryable = code == 429 || code >= 500;
+        }
+    }
+
+    private static class Entry {
+        final String etag;
+        final String lastModified;
+        final String body;
+        /**
+         * The hash of the body, null for entries saved when bodies were stored by their hash.
+         */
+        final String hash;
+
+        Entry(String etag, String lastModified, String body, String hash) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+
+            Entry entry = (Entry) o;
+
+            return this.body.equals(entry.body)
+                    && Objects.equals(this.hash, entry.hash)
+                    && Objects.equals(this.etag, entry.etag)
+                    && Objects.equals(this.lastModified, entry.lastModified);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.body.hashCode();
+        }
+    }
+}
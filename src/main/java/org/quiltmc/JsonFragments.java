@@ -0,0 +1,168 @@
+package org.quiltmc;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializes pieces of JSON documents exactly as a {@link JsonWriter} from the given {@link Gson} would write them at
+ * a given nesting depth, so that documents can later be assembled by concatenating bytes.
+ *
+ * <p>The depth is the number of containers enclosing the piece, so members of a top-level object are at depth 1.
+ */
+public class JsonFragments {
+    private static final byte[] COMMA = {','};
+
+    private final Gson gson;
+
+    public JsonFragments(Gson gson) {
+        this.gson = gson;
+    }
+
+    /**
+     * @return the contents of a JSON string literal, without the quotes
+     */
+    public byte[] string(String value) {
+        String literal = this.capture(0, false, writer -> writer.value(value));
+
+        return literal.substring(1, literal.length() - 1).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the name and value of an object member, or nothing if the value is dropped as null
+     */
+    public byte[] member(int depth, String name, JsonElement value) {
+        return bytes(this.capture(depth, true, writer -> {
+            writer.name(name);
+            this.gson.toJson(value == null ? JsonNull.INSTANCE : value, writer);
+        }));
+    }
+
+    public byte[] member(int depth, String name, String value) {
+        return this.member(depth, name, new JsonPrimitive(value));
+    }
+
+    public byte[] element(int depth, JsonElement value) {
+        return bytes(this.capture(depth, false, writer -> this.gson.toJson(value, writer)));
+    }
+
+    /**
+     * @return an object member up to and including the opening bracket of its array value
+     */
+    public byte[] arrayStart(int depth, String name) {
+        return bytes(this.capture(depth, true, writer -> writer.name(name).beginArray()));
+    }
+
+    /**
+     * @return the opening brace of an object that is an element of an array
+     */
+    public byte[] objectStart(int depth) {
+        return bytes(this.capture(depth, false, JsonWriter::beginObject));
+    }
+
+    /**
+     * @return the closing bracket of a non-empty array whose elements are at the given depth
+     */
+    public byte[] arrayEnd(int depth) {
+        return bytes(this.capture(depth, false, writer -> writer.value(0), JsonWriter::endArray));
+    }
+
+    /**
+     * @return the closing brace of a non-empty object whose members are at the given depth
+     */
+    public byte[] objectEnd(int depth) {
+        return bytes(this.capture(depth, true, writer -> writer.name("a").value(0), JsonWriter::endObject));
+    }
+
+    private String capture(int depth, boolean object, Step step) {
+        return this.capture(depth, object, writer -> {}, step);
+    }
+
+    /**
+     * Opens containers up to the given depth, runs the setup step and then captures what the step writes.
+     */
+    private String capture(int depth, boolean object, Step setup, Step step) {
+        StringWriter out = new StringWriter();
+
+        try {
+            JsonWriter writer = this.gson.newJsonWriter(out);
+
+            writer.setLenient(true);
+
+            for (int i = 1; i < depth; ++i) {
+                writer.beginArray();
+            }
+
+            if (depth > 0) {
+                if (object) {
+                    writer.beginObject();
+                } else {
+                    writer.beginArray();
+                }
+            }
+
+            setup.write(writer);
+            writer.flush();
+
+            int start = out.getBuffer().length();
+
+            step.write(writer);
+            writer.flush();
+
+            return out.getBuffer().substring(start);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Joins pieces with commas, skipping empty ones.
+     */
+    public static void join(ByteArrayOutputStream out, byte[]... pieces) {
+        boolean first = true;
+
+        for (byte[] piece : pieces) {
+            if (piece.length > 0) {
+                if (!first) {
+                    out.write(COMMA, 0, 1);
+                }
+
+                out.write(piece, 0, piece.length);
+                first = false;
+            }
+        }
+    }
+
+    public static byte[] join(byte[]... pieces) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        join(out, pieces);
+
+        return out.toByteArray();
+    }
+
+    public static byte[] concat(byte[]... pieces) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for (byte[] piece : pieces) {
+            out.write(piece, 0, piece.length);
+        }
+
+        return out.toByteArray();
+    }
+
+    private static byte[] bytes(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private interface Step {
+        void write(JsonWriter writer) throws IOException;
+    }
+}
@@ -0,0 +1,66 @@
+package org.quiltmc;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes JSON straight into a reusable UTF-8 byte buffer, formatted exactly like {@link Gson#toJson(JsonElement)}.
+ *
+ * <p>Instances are not thread safe, use one per thread.
+ */
+public class JsonOutput {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Gson gson;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(16 * 1024);
+
+    public JsonOutput(Gson gson) {
+        this.gson = gson;
+    }
+
+    /**
+     * Starts a new document, discarding anything written before.
+     *
+     * <p>The encoder is buffered, {@link JsonWriter} writes a few characters at a time and encoding each of those
+     * writes on its own costs more than building a string and encoding that.
+     */
+    public JsonWriter begin() throws IOException {
+        this.buffer.reset();
+
+        return this.gson.newJsonWriter(new BufferedWriter(new OutputStreamWriter(this.buffer, StandardCharsets.UTF_8), BUFFER_SIZE));
+    }
+
+    public byte[] finish(JsonWriter writer) throws IOException {
+        writer.flush();
+
+        return this.buffer.toByteArray();
+    }
+
+    public byte[] toBytes(JsonElement element) throws IOException {
+        JsonWriter writer = this.begin();
+
+        this.write(writer, element);
+
+        return this.finish(writer);
+    }
+
+    /**
+     * Writes an element, or {@code null} which is dropped from objects unless the {@link Gson} serializes nulls.
+     */
+    public void write(JsonWriter writer, JsonElement element) {
+        this.gson.toJson(element == null ? JsonNull.INSTANCE : element, writer);
+    }
+
+    public void write(JsonWriter writer, String name, JsonElement element) throws IOException {
+        writer.name(name);
+        this.write(writer, element);
+    }
+}
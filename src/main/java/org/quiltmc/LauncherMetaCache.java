@@ -0,0 +1,96 @@
+package org.quiltmc;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The launcher meta of every loader build, keyed by its maven id and kept in the {@link StateStore} as JSON lines.
+ *
+ * <p>A published build's launcher meta never changes, so it is loaded once per container and only builds that aren't
+ * in the cache yet are ever fetched.
+ */
+public class LauncherMetaCache {
+    public static final String KEY = "launcher-meta.jsonl";
+
+    private final StateStore store;
+    private final Map<String, JsonElement> entries = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+    private boolean loaded;
+
+    public LauncherMetaCache(StateStore store) {
+        this.store = store;
+    }
+
+    public void load() throws IOException {
+        if (this.loaded) {
+            return;
+        }
+
+        byte[] contents = this.store.read(KEY);
+
+        if (contents != null) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(contents), StandardCharsets.UTF_8));
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    JsonObject entry = JsonParser.parseString(line).getAsJsonObject();
+
+                    this.entries.put(entry.get("maven").getAsString(), entry.get("launcherMeta"));
+                }
+            }
+        }
+
+        this.loaded = true;
+        System.out.printf("Loaded launcher meta of %d loader versions%n", this.entries.size());
+    }
+
+    /**
+     * Writes the cache back if anything was added, sorted by maven id so unchanged caches are written identically.
+     */
+    public void save() throws IOException {
+        if (!this.dirty) {
+            return;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+
+        for (Map.Entry<String, JsonElement> entry : new TreeMap<>(this.entries).entrySet()) {
+            JsonObject line = new JsonObject();
+
+            line.addProperty("maven", entry.getKey());
+            line.add("launcherMeta", entry.getValue());
+            writer.write(line.toString());
+            writer.write('\n');
+        }
+
+        writer.flush();
+        this.store.write(KEY, out.toByteArray());
+        this.dirty = false;
+    }
+
+    /**
+     * @return the launcher meta of a loader build, or null if it hasn't been fetched yet
+     */
+    public JsonElement get(String mavenId) {
+        return this.entries.get(mavenId);
+    }
+
+    public boolean contains(String mavenId) {
+        return this.entries.containsKey(mavenId);
+    }
+
+    public void put(String mavenId, JsonElement launcherMeta) {
+        if (this.entries.put(mavenId, launcherMeta) == null) {
+            this.dirty = true;
+        }
+    }
+}
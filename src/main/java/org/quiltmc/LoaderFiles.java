@@ -0,0 +1,310 @@
+package org.quiltmc;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Renders the files under {@code v3/versions/loader} by joining fragments that are serialized once per game version
+ * and once per loader version, instead of building and serializing a JSON tree for every combination of the two.
+ */
+public class LoaderFiles {
+    private static final byte[] OBJECT_START = {'{'};
+    private static final byte[] ARRAY_START = {'['};
+    private static final byte[] EMPTY_ARRAY = {'[', ']'};
+    private static final byte[] COMMA = {','};
+    private static final byte[] DASH = {'-'};
+    private static final byte[] QUOTE = {'"'};
+
+    private final JsonFragments fragments;
+    private final String mavenUrl;
+    private final String fabricUrl;
+    private final String currentTime;
+    private final byte[] idStart;
+    private final byte[] arguments;
+    private final byte[] librariesStart;
+    private final byte[] librariesEnd;
+    private final byte[] profileEnd;
+    private final byte[] loaderVersionStart;
+    private final byte[] loaderVersionEnd;
+    private final byte[] nestedLoaderVersionEnd;
+    private final byte[] loaderVersionsEnd;
+    private final Map<String, byte[]> times = new ConcurrentHashMap<>();
+    private final Map<String, Game> games = new ConcurrentHashMap<>();
+    private final Map<String, Loader> loaders = new ConcurrentHashMap<>();
+    private final ThreadLocal<ByteArrayOutputStream> buffer = ThreadLocal.withInitial(() -> new ByteArrayOutputStream(16 * 1024));
+
+    public LoaderFiles(Gson gson, String mavenUrl, String fabricUrl, String currentTime) {
+        this.fragments = new JsonFragments(gson);
+        this.mavenUrl = mavenUrl;
+        this.fabricUrl = fabricUrl;
+        this.currentTime = currentTime;
+
+        byte[] id = this.fragments.member(1, "id", "quilt-loader-");
+        JsonObject arguments = new JsonObject();
+        arguments.add("game", new JsonArray());
+
+        // Drop the closing quote, the versions are appended to the string
+        this.idStart = Arrays.copyOf(id, id.length - 1);
+        this.arguments = this.fragments.member(1, "arguments", arguments);
+        this.librariesStart = this.fragments.arrayStart(1, "libraries");
+        this.librariesEnd = this.fragments.arrayEnd(2);
+        this.profileEnd = this.fragments.objectEnd(1);
+        this.loaderVersionStart = this.fragments.objectStart(1);
+        this.loaderVersionEnd = this.fragments.objectEnd(1);
+        this.nestedLoaderVersionEnd = this.fragments.objectEnd(2);
+        this.loaderVersionsEnd = this.fragments.arrayEnd(1);
+    }
+
+    public Game game(String version, JsonObject hashed, JsonObject intermediary) {
+        return this.games.computeIfAbsent(version, v -> new Game(v, hashed, intermediary));
+    }
+
+    public Loader loader(JsonObject loader, JsonObject launcherMeta) {
+        return this.loaders.computeIfAbsent(loader.get("maven").getAsString(), maven -> new Loader(maven, loader, launcherMeta));
+    }
+
+    /**
+     * Renders {@code v3/versions/loader/<game>/<loader>/<side>/json}.
+     */
+    public byte[] profile(Game game, Loader loader, Side side) {
+        return this.profile(game, loader, side, this.currentTime);
+    }
+
+    /**
+     * Renders {@code v3/versions/loader/<game>/<loader>/<side>/json} with the given time instead of the current one.
+     */
+    public byte[] profile(Game game, Loader loader, Side side, String time) {
+        if (game.libraries == null) {
+            throw new IllegalStateException("No hashed mojmap or intermediary for " + game.version);
+        }
+
+        ByteArrayOutputStream out = this.buffer.get();
+        Loader.Profile profile = loader.profiles[side.ordinal()];
+
+        out.reset();
+        write(out, OBJECT_START);
+        write(out, this.idStart);
+        write(out, loader.escapedVersion);
+        write(out, DASH);
+        write(out, game.escapedVersion);
+        write(out, QUOTE);
+        write(out, COMMA);
+        write(out, game.inheritsFrom);
+        write(out, COMMA);
+        write(out, this.times.computeIfAbsent(time, this::times));
+        write(out, profile.mainClass);
+        write(out, COMMA);
+        write(out, this.arguments);
+        write(out, COMMA);
+        write(out, this.librariesStart);
+        write(out, loader.commonLibraries);
+        write(out, game.libraries);
+        write(out, profile.libraries);
+        write(out, this.librariesEnd);
+        write(out, this.profileEnd);
+
+        return out.toByteArray();
+    }
+
+    private byte[] times(String time) {
+        return JsonFragments.join(
+                this.fragments.member(1, "releaseTime", time),
+                this.fragments.member(1, "time", time),
+                this.fragments.member(1, "type", "release")
+        );
+    }
+
+    /**
+     * Renders {@code v3/versions/loader/<game>/<loader>}.
+     */
+    public byte[] loaderVersion(Game game, Loader loader) {
+        ByteArrayOutputStream out = this.buffer.get();
+
+        out.reset();
+        write(out, OBJECT_START);
+        JsonFragments.join(out, loader.loader[0], game.hashed[0], game.intermediary[0], loader.launcherMeta[0]);
+        write(out, this.loaderVersionEnd);
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Renders {@code v3/versions/loader/<game>}.
+     */
+    public byte[] loaderVersions(Game game, List<Loader> loaders) {
+        if (loaders.isEmpty()) {
+            return EMPTY_ARRAY.clone();
+        }
+
+        ByteArrayOutputStream out = this.buffer.get();
+
+        out.reset();
+        write(out, ARRAY_START);
+
+        for (int i = 0; i < loaders.size(); ++i) {
+            Loader loader = loaders.get(i);
+
+            if (i > 0) {
+                write(out, COMMA);
+            }
+
+            write(out, this.loaderVersionStart);
+            JsonFragments.join(out, loader.loader[1], game.hashed[1], game.intermediary[1], loader.launcherMeta[1]);
+            write(out, this.nestedLoaderVersionEnd);
+        }
+
+        write(out, this.loaderVersionsEnd);
+
+        return out.toByteArray();
+    }
+
+    private static void write(ByteArrayOutputStream out, byte[] bytes) {
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static JsonObject getLibrary(String mavenPath, String url) {
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("name", mavenPath);
+        jsonObject.addProperty("url", url);
+        return jsonObject;
+    }
+
+    public class Game {
+        final String version;
+        final byte[] escapedVersion;
+        final byte[] inheritsFrom;
+        /**
+         * The hashed and intermediary libraries of a profile, or null if the game is missing either.
+         */
+        final byte[] libraries;
+        /**
+         * Members of a loader version file, at the top level and when nested in the per game list.
+         */
+        final byte[][] hashed = new byte[2][];
+        final byte[][] intermediary = new byte[2][];
+
+        Game(String version, JsonObject hashed, JsonObject intermediary) {
+            JsonFragments fragments = LoaderFiles.this.fragments;
+
+            this.version = version;
+            this.escapedVersion = fragments.string(version);
+            this.inheritsFrom = fragments.member(1, "inheritsFrom", version);
+            this.libraries = hashed == null || intermediary == null ? null : JsonFragments.join(
+                    fragments.element(2, getLibrary(hashed.get("maven").getAsString(), LoaderFiles.this.mavenUrl)),
+                    fragments.element(2, getLibrary(intermediary.get("maven").getAsString(), LoaderFiles.this.fabricUrl))
+            );
+
+            for (int depth = 1; depth <= 2; ++depth) {
+                this.hashed[depth - 1] = fragments.member(depth, "hashed", hashed);
+                this.intermediary[depth - 1] = fragments.member(depth, "intermediary", intermediary);
+            }
+        }
+    }
+
+    public class Loader {
+        final byte[] escapedVersion;
+        /**
+         * The common libraries followed by a comma, or nothing if there are none.
+         */
+        final byte[] commonLibraries;
+        final Profile[] profiles = new Profile[Side.values().length];
+        final byte[][] loader = new byte[2][];
+        final byte[][] launcherMeta = new byte[2][];
+
+        Loader(String maven, JsonObject loader, JsonObject launcherMeta) {
+            JsonFragments fragments = LoaderFiles.this.fragments;
+            JsonObject libraries = launcherMeta.get("libraries").getAsJsonObject();
+
+            this.escapedVersion = fragments.string(loader.get("version").getAsString());
+            this.commonLibraries = this.elements(libraries.get("common").getAsJsonArray(), true);
+
+            byte[] library = fragments.element(2, getLibrary(maven, LoaderFiles.this.mavenUrl));
+
+            for (Side side : Side.values()) {
+                byte[] mainClass = new byte[0];
+                byte[] launcherMainClass = new byte[0];
+
+                if (launcherMeta.get("mainClass").isJsonObject()) {
+                    mainClass = fragments.member(1, "mainClass", launcherMeta.get("mainClass").getAsJsonObject().get(side.side).getAsString());
+                }
+
+                if (side == Side.SERVER && launcherMeta.has("mainClass") && launcherMeta.get("mainClass").getAsJsonObject().has("serverLauncher")) {
+                    // Add the server launch main class
+                    launcherMainClass = fragments.member(1, "launcherMainClass", launcherMeta.get("mainClass").getAsJsonObject().get("serverLauncher").getAsString());
+                }
+
+                byte[] sideLibraries = libraries.has(side.side)
+                        ? this.elements(libraries.get(side.side).getAsJsonArray(), false)
+                        : new byte[0];
+
+                this.profiles[side.ordinal()] = new Profile(
+                        JsonFragments.concat(mainClass.length > 0 ? COMMA : new byte[0], mainClass,
+                                launcherMainClass.length > 0 ? COMMA : new byte[0], launcherMainClass),
+                        JsonFragments.concat(COMMA, library, sideLibraries)
+                );
+            }
+
+            for (int depth = 1; depth <= 2; ++depth) {
+                this.loader[depth - 1] = fragments.member(depth, "loader", loader);
+                this.launcherMeta[depth - 1] = fragments.member(depth, "launcherMeta", launcherMeta);
+            }
+        }
+
+        /**
+         * Serializes libraries as elements of the profile's library list, with a trailing or leading comma.
+         */
+        private byte[] elements(JsonArray libraries, boolean trailingComma) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            for (JsonElement library : libraries) {
+                if (!trailingComma) {
+                    write(out, COMMA);
+                }
+
+                write(out, LoaderFiles.this.fragments.element(2, library));
+
+                if (trailingComma) {
+                    write(out, COMMA);
+                }
+            }
+
+            return out.toByteArray();
+        }
+
+        class Profile {
+            /**
+             * The main class members, each preceded by a comma.
+             */
+            final byte[] mainClass;
+            /**
+             * The loader library and side specific libraries, each preceded by a comma.
+             */
+            final byte[] libraries;
+
+            Profile(byte[] mainClass, byte[] libraries) {
+                this.mainClass = mainClass;
+                this.libraries = libraries;
+            }
+        }
+    }
+
+    public enum Side {
+        CLIENT("client", "profile"), SERVER("server", "server");
+
+        final String side;
+        public final String type;
+
+        Side(String side, String type) {
+            this.side = side;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.quiltmc;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+
+import java.lang.reflect.Array;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Runs the steps of a sharded run in one process, with every shard on its own thread, the way separate invocations
+ * would run them.
+ */
+public class LocalShardRunner {
+    private final Supplier<Meta> workers;
+    private final int shards;
+
+    /**
+     * @param workers creates a handler for each step, all of them sharing a state store and a bucket
+     */
+    public LocalShardRunner(Supplier<Meta> workers, int shards) {
+        this.workers = workers;
+        this.shards = shards;
+    }
+
+    /**
+     * @return the response of the first step that failed, or that of the finish step
+     */
+    public APIGatewayProxyResponseEvent run() {
+        APIGatewayProxyResponseEvent response = this.workers.get().handleRequest(this.request("coordinate", null), null);
+
+        if (response.getStatusCode() != 200) {
+            return response;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(this.shards, new NamedThreadFactory("shard"));
+
+        @SuppressWarnings("unchecked")
+        CompletableFuture<APIGatewayProxyResponseEvent>[] futures = (CompletableFuture<APIGatewayProxyResponseEvent>[]) Array.newInstance(CompletableFuture.class, this.shards);
+
+        try {
+            for (int i = 0; i < this.shards; ++i) {
+                APIGatewayProxyRequestEvent request = this.request("shard", i);
+
+                futures[i] = CompletableFuture.supplyAsync(() -> this.workers.get().handleRequest(request, null), executor);
+            }
+
+            CompletableFuture.allOf(futures).join();
+        } finally {
+            executor.shutdown();
+        }
+
+        for (CompletableFuture<APIGatewayProxyResponseEvent> future : futures) {
+            if (future.join().getStatusCode() != 200) {
+                return future.join();
+            }
+        }
+
+        return this.workers.get().handleRequest(this.request("finish", null), null);
+    }
+
+    private APIGatewayProxyRequestEvent request(String step, Integer shard) {
+        Map<String, String> parameters = new HashMap<>();
+
+        parameters.put("step", step);
+        parameters.put("shards", String.valueOf(this.shards));
+
+        if (shard != null) {
+            parameters.put("shard", String.valueOf(shard));
+        }
+
+        return new APIGatewayProxyRequestEvent().withQueryStringParameters(parameters);
+    }
+}
@@ -0,0 +1,34 @@
+package org.quiltmc;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+public class LocalStateStore implements StateStore {
+    private final Path directory;
+
+    public LocalStateStore(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public byte[] read(String key) throws IOException {
+        try {
+            return Files.readAllBytes(this.directory.resolve(key));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void write(String key, byte[] contents) throws IOException {
+        Path path = this.directory.resolve(key);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        Files.createDirectories(path.getParent());
+        Files.write(temp, contents);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,145 @@
+package org.quiltmc;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads {@code maven-metadata.xml} files in a single streaming pass.
+ *
+ * <p>The factory is looked up and configured once, creating readers from it is thread safe.
+ */
+public final class MavenMetadataParser {
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private MavenMetadataParser() {
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        return factory;
+    }
+
+    public static Metadata parse(byte[] contents) throws XMLStreamException {
+        return parse(new ByteArrayInputStream(contents));
+    }
+
+    public static Metadata parse(InputStream stream) throws XMLStreamException {
+        XMLStreamReader reader = FACTORY.createXMLStreamReader(stream);
+        List<String> versions = new ArrayList<>();
+        Map<String, Integer> indices = new HashMap<>();
+        String latest = null;
+        String release = null;
+        String lastUpdated = null;
+        boolean inVersioning = false;
+        boolean inVersions = false;
+
+        try {
+            while (reader.hasNext()) {
+                int event = reader.next();
+
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "versioning":
+                            inVersioning = false;
+                            break;
+                        case "versions":
+                            inVersions = false;
+                            break;
+                    }
+                } else if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+
+                    if (inVersions) {
+                        if (name.equals("version")) {
+                            String version = reader.getElementText().trim();
+
+                            // Only the first occurrence of a version counts
+                            if (indices.putIfAbsent(version, versions.size()) == null) {
+                                versions.add(version);
+                            }
+                        }
+                    } else if (inVersioning) {
+                        switch (name) {
+                            case "versions":
+                                inVersions = true;
+                                break;
+                            case "latest":
+                                latest = reader.getElementText().trim();
+                                break;
+                            case "release":
+                                release = reader.getElementText().trim();
+                                break;
+                            case "lastUpdated":
+                                lastUpdated = reader.getElementText().trim();
+                                break;
+                        }
+                    } else if (name.equals("versioning")) {
+                        inVersioning = true;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        Collections.reverse(versions);
+
+        return new Metadata(versions.toArray(new String[0]), indices, latest, release, lastUpdated);
+    }
+
+    /**
+     * The versions of an artifact, newest first, along with the stamps a caller can compare against the last run.
+     */
+    public static class Metadata {
+        public final String latest;
+        public final String release;
+        /**
+         * When the metadata was last updated as {@code yyyyMMddHHmmss}, or null if the repository doesn't say.
+         */
+        public final String lastUpdated;
+        private final String[] versions;
+        /**
+         * Positions of the versions in document order, oldest first.
+         */
+        private final Map<String, Integer> indices;
+
+        Metadata(String[] versions, Map<String, Integer> indices, String latest, String release, String lastUpdated) {
+            this.versions = versions;
+            this.indices = indices;
+            this.latest = latest;
+            this.release = release;
+            this.lastUpdated = lastUpdated;
+        }
+
+        public int size() {
+            return this.versions.length;
+        }
+
+        public String get(int index) {
+            return this.versions[index];
+        }
+
+        /**
+         * @return the position of a version, newest first, or -1 if there is no such version
+         */
+        public int indexOf(String version) {
+            Integer index = this.indices.get(version);
+
+            return index == null ? -1 : this.versions.length - 1 - index;
+        }
+    }
+}
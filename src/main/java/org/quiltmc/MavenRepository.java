@@ -1,103 +1,140 @@
 package org.quiltmc;
 
-import javax.xml.stream.XMLInputFactory;
-import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.XMLStreamReader;
 import java.io.IOException;
-import java.net.URL;
-import java.util.*;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MavenRepository {
     public final String url;
+    private final Fetcher fetcher;
+    private final Map<String, CompletableFuture<ArtifactMetadata>> metadata = new ConcurrentHashMap<>();
 
-    public MavenRepository(String url) {
+    public MavenRepository(String url, Fetcher fetcher) {
         this.url = url;
+        this.fetcher = fetcher;
     }
 
-    public ArtifactMetadata getMetadata(String group, String name) throws IOException {
-        Collection<String> versions = readVersionsFromPom(String.format("%s%s/%s/maven-metadata.xml",
-                this.url,
-                String.join("/", group.split("\\.")),
-                name
-        ));
+    /**
+     * Gets the metadata of an artifact. Concurrent and later callers asking for the same artifact share a single
+     * download and parse until the cache is {@link #clear() cleared}.
+     */
+    public ArtifactMetadata getMetadata(String group, String name) {
+        CompletableFuture<ArtifactMetadata> future = new CompletableFuture<>();
+        CompletableFuture<ArtifactMetadata> existing = this.metadata.putIfAbsent(group + ":" + name, future);
 
-        return new ArtifactMetadata(group, name, versions);
+        if (existing != null) {
+            return existing.join();
+        }
+
+        try {
+            future.complete(this.loadMetadata(group, name));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+
+        return future.join();
     }
 
-    private static Collection<String> readVersionsFromPom(String path) throws IOException {
-        Collection<String> versions = new LinkedHashSet<>();
+    /**
+     * Forgets every cached metadata file, so the next run sees newly published versions.
+     */
+    public void clear() {
+        this.metadata.clear();
+    }
 
-        try {
-            URL url = new URL(path);
-            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(url.openStream());
-
-            while (reader.hasNext()) {
-                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("version")) {
-                    String text = reader.getElementText();
-                    versions.add(text);
-                }
-            }
+    /**
+     * Loads the metadata of an artifact, failing the run if it can't be fetched or parsed. Reading an unavailable file as
+     * an empty version list would unpublish every version of the artifact.
+     */
+    private ArtifactMetadata loadMetadata(String group, String name) {
+        String path = String.format("%s%s/%s/maven-metadata.xml",
+                this.url,
+                String.join("/", group.split("\\.")),
+                name
+        );
 
-            reader.close();
-            List<String> list = new ArrayList<>(versions);
-            Collections.reverse(list);
-            versions.clear();
-            versions.addAll(list);
+        try {
+            byte[] contents = this.fetcher.get(path);
 
-        } catch (IOException | XMLStreamException e){
-            System.out.println("Failed to load " + path + ": " + e);
+            return new ArtifactMetadata(group, name, MavenMetadataParser.parse(contents), Hashing.md5(contents));
+        } catch (IOException | XMLStreamException e) {
+            throw new RuntimeException("Failed to load " + path, e);
         }
-
-        return versions;
     }
 
     public class ArtifactMetadata implements Iterable<ArtifactMetadata.Artifact> {
         public final String group;
         public final String name;
-        private final Collection<String> versions;
-        private final Collection<Artifact> artifacts;
-
-        ArtifactMetadata(String group, String name, Collection<String> versions) {
+        public final MavenMetadataParser.Metadata metadata;
+        /**
+         * The hash of the {@code maven-metadata.xml} file.
+         */
+        public final String fingerprint;
+        private final String path;
+        private final Artifact[] artifacts;
+
+        ArtifactMetadata(String group, String name, MavenMetadataParser.Metadata metadata, String fingerprint) {
             this.group = group;
             this.name = name;
-            this.versions = versions;
-            this.artifacts = new LinkedHashSet<>();
+            this.metadata = metadata;
+            this.fingerprint = fingerprint;
+            this.path = MavenRepository.this.url + group.replace('.', '/') + "/" + name + "/";
+            this.artifacts = new Artifact[metadata.size()];
 
-            for (String version : versions) {
-                this.artifacts.add(new Artifact(version));
+            for (int i = 0; i < this.artifacts.length; ++i) {
+                this.artifacts[i] = new Artifact(metadata.get(i));
             }
         }
 
         @Override
         public Iterator<Artifact> iterator() {
-            return this.artifacts.iterator();
+            return Arrays.asList(this.artifacts).iterator();
+        }
+
+        /**
+         * @return when the repository last updated the metadata, or null if it doesn't say
+         */
+        public String lastUpdated() {
+            return this.metadata.lastUpdated;
         }
 
         public boolean contains(String version) {
-            return this.versions.contains(version);
+            return this.metadata.indexOf(version) >= 0;
         }
 
+        /**
+         * A version of the artifact, parsed and with its coordinates built once as the metadata is loaded.
+         */
         public class Artifact {
             public final String version;
+            public final Version parsed;
+            private final String mavenId;
+            private final String path;
 
             public Artifact(String version) {
                 this.version = version;
+                this.parsed = Version.parse(version);
+                this.mavenId = ArtifactMetadata.this.group + ":" + ArtifactMetadata.this.name + ":" + version;
+                this.path = ArtifactMetadata.this.path + version + "/" + ArtifactMetadata.this.name + "-" + version;
             }
 
             public String mavenId() {
-                return String.format("%s:%s:%s", ArtifactMetadata.this.group, ArtifactMetadata.this.name, this.version);
+                return this.mavenId;
             }
 
             public String url() {
-                return String.format("%s%s/%s/%s/%s-%s.jar",
-                        MavenRepository.this.url,
-                        ArtifactMetadata.this.group.replaceAll("\\.", "/"),
-                        ArtifactMetadata.this.name,
-                        this.version,
-                        ArtifactMetadata.this.name,
-                        this.version
-                );
+                return this.path + ".jar";
+            }
+
+            /**
+             * @return the URL of the file next to the jar with the given extension, such as {@code .json}
+             */
+            public String url(String extension) {
+                return this.path + extension;
             }
         }
     }
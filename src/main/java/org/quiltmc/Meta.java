@@ -5,21 +5,16 @@ import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 import com.google.gson.*;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.utils.Pair;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.lang.reflect.Array;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.function.Function;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
 
 /**
  * Handler for requests to Lambda function.
@@ -27,18 +22,109 @@ import java.util.function.Function;
 @SuppressWarnings("unused")
 public class Meta implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
     private static final DateFormat ISO_8601 = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
-
-    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
-    private final MavenRepository maven = new MavenRepository(System.getenv("META_MAVEN_URL"));
-    private final MavenRepository fabric = new MavenRepository("https://maven.fabricmc.net/");
-    private final String group = System.getenv("META_GROUP");
+    private static final int GENERATION_THREADS = Integer.parseInt(System.getenv().getOrDefault("META_GENERATION_THREADS",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+    /**
+     * Pools live as long as the container and are reused by every invocation it serves.
+     */
+    private static final ExecutorService FETCH_EXECUTOR = Executors.newCachedThreadPool(new NamedThreadFactory("meta-fetch"));
+    private static final ExecutorService GENERATION_EXECUTOR = Executors.newFixedThreadPool(GENERATION_THREADS, new NamedThreadFactory("meta-generate"));
+
+    private final Config config;
+    private final boolean compact;
+    private final Gson gson;
+    private final ThreadLocal<JsonOutput> output;
+    private final boolean warmCache;
+    private final StateStore state;
+    private final Fetcher fetcher;
+    private final MavenRepository maven;
+    private final MavenRepository fabric;
+    private final String group;
+    private final boolean incremental;
+    private final ObjectStore bucketStore;
+    private final OutputEncoding encoding;
+    private final LauncherMetaCache launcherMetaData;
     private final Map<String, JsonArray> arrays = new ConcurrentHashMap<>();
-    private final Map<String, JsonElement> launcherMetaData = new ConcurrentHashMap<>();
     private final Map<String, JsonObject> gameIntermediaries = new ConcurrentHashMap<>();
     private final Map<String, JsonObject> gameHashedMojmap = new ConcurrentHashMap<>();
     private final Deque<MavenRepository.ArtifactMetadata.Artifact> loaderVersions = new ConcurrentLinkedDeque<>();
-    private final Map<String, Pair<byte[], String>> files = new ConcurrentHashMap<>();
+    private final BitSet dirtyGames = new BitSet();
+    private final BitSet dirtyLoaders = new BitSet();
+    private boolean loadersChanged;
+    private RunManifest previousManifest;
+    private RunManifest manifest;
+    /**
+     * The manifest written by the last successful invocation in this container.
+     */
+    private RunManifest writtenManifest;
+    /**
+     * The records of the stages that ran in this invocation, and those written by earlier ones when warm.
+     */
+    private final Map<String, StageRecord> ranStages = new ConcurrentHashMap<>();
+    private final Map<String, StageRecord> writtenStages = new ConcurrentHashMap<>();
+    private Publisher publisher;
+    private LoaderFiles loaderFiles;
+    private VersionTable versions;
+    /**
+     * The fragments of each loader version by id, see {@link #getLoader(int)}.
+     */
+    private LoaderFiles.Loader[] loaders;
+    /**
+     * The bulk snapshot published by this invocation and the history to save with it, or null if none was.
+     */
+    private BulkSnapshot snapshot;
+    private BulkSnapshot.History snapshotHistory;
+    /**
+     * Metrics of the last invocation, see {@link #getMetrics()}.
+     */
+    private final Metrics metrics = new Metrics();
+    private long phaseStart;
+
+    /**
+     * Reads the configuration from the environment, as the Lambda runtime creates the handler.
+     */
+    public Meta() {
+        this(Config.fromEnvironment());
+    }
 
+    public Meta(Config config) {
+        this(config, StateStore.fromConfig(config));
+    }
+
+    private Meta(Config config, StateStore state) {
+        this(config, state,
+                new HttpFetcher(state, config.warmCache, config.fetchConcurrency, config.fetchConcurrencyPerHost),
+                new S3ObjectStore(config.bucket, config.uploadConcurrency));
+    }
+
+    /**
+     * Creates a handler that reads from and publishes to the given stand-ins, such as local fixtures and an in-memory
+     * bucket.
+     */
+    public Meta(Config config, StateStore state, Fetcher fetcher, ObjectStore bucketStore) {
+        this.config = config;
+        this.compact = config.compact;
+        this.gson = this.compact ? new Gson() : new GsonBuilder().setPrettyPrinting().create();
+        this.output = ThreadLocal.withInitial(() -> new JsonOutput(this.gson));
+        this.warmCache = config.warmCache;
+        this.state = state;
+        this.fetcher = fetcher;
+        this.maven = new MavenRepository(config.mavenUrl, fetcher);
+        this.fabric = new MavenRepository(config.fabricUrl, fetcher);
+        this.group = config.group;
+        this.incremental = config.incremental;
+        this.bucketStore = bucketStore;
+        this.encoding = config.encoding;
+        this.launcherMetaData = new LauncherMetaCache(state);
+    }
+
+    /**
+     * Runs the whole generation, or one step of a sharded run when the {@code step} query parameter is set.
+     *
+     * <p>A sharded run is a {@code coordinate} step, then a {@code shard} step for every shard from 0 up to the
+     * {@code shards} parameter, which can run in parallel, and finally a {@code finish} step. See {@link
+     * LocalShardRunner}.
+     */
     public APIGatewayProxyResponseEvent handleRequest(final APIGatewayProxyRequestEvent input, final Context context) {
         Map<String, String> headers = new HashMap<>();
         headers.put("Content-Type", "application/json");
@@ -48,73 +134,377 @@ public class Meta implements RequestHandler<APIGatewayProxyRequestEvent, APIGate
                 .withHeaders(headers);
 
         try {
-            ExecutorService executor = Executors.newCachedThreadPool();
-
-            CompletableFuture.allOf(
-                    this.populateHashedMojmapAndGame(executor),
-                    this.populateIntermediaryAndGame(executor),
-                    CompletableFuture.runAsync(this::populateMappings, executor),
-                    CompletableFuture.runAsync(this::populateQuiltMappings, executor),
-                    CompletableFuture.runAsync(this::populateInstaller, executor),
-                    CompletableFuture.runAsync(this.populateLoader(executor), executor)
-            ).join();
-
-            System.out.println("Building loader stuff");
-
-            this.populateLoaderVersions();
-            this.populateProfiles();
-
-            JsonObject versions = new JsonObject();
-
-            versions.add("game", this.arrays.get("game"));
-            versions.add("mappings", this.arrays.get("mappings"));
-            versions.add("hashed", this.arrays.get("hashed"));
-            versions.add("loader", this.arrays.get("loader"));
-            versions.add("installer", this.arrays.get("installer"));
-
-            upload("v3/versions", this.gson.toJson(versions));
-            upload("v3/versions/game", this.gson.toJson(this.arrays.get("game")));
-
-            this.upload();
+            this.reset();
+
+            String step = parameter(input, "step");
+            JsonObject body;
+
+            if (step == null) {
+                body = this.run();
+            } else {
+                int shards = Integer.parseInt(parameter(input, "shards"));
+
+                // Other containers take part in the run, what this one last wrote may not be current
+                this.writtenManifest = null;
+
+                switch (step) {
+                    case "coordinate":
+                        body = this.coordinate(shards);
+                        break;
+                    case "shard":
+                        body = this.generateShard(Integer.parseInt(parameter(input, "shard")), shards);
+                        break;
+                    case "finish":
+                        body = this.finishShards(shards);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown step " + step);
+                }
+            }
 
             System.out.println("Done updating files");
+            this.metrics.count("failures", 0);
 
             return response
                     .withStatusCode(200)
-                    .withBody(this.gson.toJson(versions));
+                    .withBody(this.gson.toJson(body));
         } catch (Exception e) {
             e.printStackTrace();
 
+            if (this.publisher != null) {
+                this.publisher.abort();
+            }
+
+            this.metrics.count("failures", 1);
+
             return response
                     .withBody(String.format("{\"message\": \"%s\"}", e.toString()))
                     .withStatusCode(500);
+        } finally {
+            this.reportMetrics();
         }
     }
 
-    private void populateMappings()  {
-        try {
-            JsonArray mappings = toJson(this.maven.getMetadata(this.group, "quilt-mappings"),
-                    version -> new JsonPrimitive(stripInfo(version.version)));
-            this.arrays.put("mappings", mappings);
+    private static String parameter(APIGatewayProxyRequestEvent input, String name) {
+        return input == null || input.getQueryStringParameters() == null ? null : input.getQueryStringParameters().get(name);
+    }
 
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    private JsonObject run() throws Exception {
+        this.previousManifest = this.warmCache && this.writtenManifest != null ? this.writtenManifest : this.readManifest();
+        this.fetcher.load();
+        this.launcherMetaData.load();
+        this.endPhase("load");
+        this.manifest = new RunManifest();
+        this.publisher = this.createPublisher();
+        this.populate();
+
+        if (this.ranStages.isEmpty() && this.canReuse(this.previousManifest)) {
+            System.out.println("Nothing changed since the last run");
+
+            this.manifest.compact = this.previousManifest.compact;
+            this.manifest.encoding = this.previousManifest.encoding;
+            this.manifest.lazyProfiles = this.previousManifest.lazyProfiles;
+            this.manifest.games.putAll(this.previousManifest.games);
+            this.manifest.loaders.putAll(this.previousManifest.loaders);
+            this.manifest.files.putAll(this.previousManifest.files);
+            this.manifest.profileTimes.putAll(this.previousManifest.profileTimes);
+        } else {
+            System.out.println("Building loader stuff");
+
+            String time = ISO_8601.format(new Date());
+
+            this.loaderFiles = new LoaderFiles(this.gson, this.maven.url, this.fabric.url, time);
+            this.buildVersions(time);
+            this.populateLoaderFiles(game -> true);
+            this.uploadProfileIndex(time);
+            this.uploadSnapshot();
         }
+
+        this.endPhase("generate");
+
+        JsonObject versions = this.uploadVersions();
+
+        this.publisher.finish(false);
+        this.endPhase("publish");
+        this.writeStages();
+        this.writeSnapshotHistory();
+        this.writeManifest();
+        this.launcherMetaData.save();
+        this.fetcher.save();
+        this.writtenManifest = this.manifest;
+        this.endPhase("save");
+        this.publisher.deleteStale(this.config.maxDeleteFraction);
+        this.endPhase("delete");
+
+        return versions;
+    }
+
+    /**
+     * Runs the populate stages and snapshots their outputs for the shards. No index file is published, nothing is
+     * deleted and no state but the caches of immutable data is saved until the finish step.
+     */
+    private JsonObject coordinate(int shards) throws Exception {
+        this.previousManifest = this.readManifest();
+        this.fetcher.load();
+        this.launcherMetaData.load();
+        this.endPhase("load");
+        this.manifest = new RunManifest();
+        this.publisher = this.createPublisher();
+        this.populate();
+
+        ShardSnapshot snapshot = new ShardSnapshot(shards, ISO_8601.format(new Date()));
+
+        snapshot.arrays.putAll(this.arrays);
+        snapshot.stages.putAll(this.ranStages);
+
+        for (JsonElement loader : this.arrays.get("loader")) {
+            String maven = loader.getAsJsonObject().get("maven").getAsString();
+
+            snapshot.launcherMeta.put(maven, this.launcherMetaData.get(maven));
+        }
+
+        this.endPhase("generate");
+        this.publisher.await();
+        snapshot.files.putAll(this.manifest.files);
+        snapshot.indexes.putAll(ShardSnapshot.indexes(this.publisher.takeIndexes()));
+        this.endPhase("publish");
+        this.state.write(ShardSnapshot.KEY, snapshot.toJson().getBytes(StandardCharsets.UTF_8));
+        this.launcherMetaData.save();
+        this.fetcher.save();
+        this.endPhase("save");
+
+        JsonObject body = new JsonObject();
+        body.addProperty("snapshot", snapshot.id);
+        body.addProperty("shards", shards);
+
+        return body;
+    }
+
+    /**
+     * Generates the loader files of the game versions assigned to a shard, and records what it published.
+     */
+    private JsonObject generateShard(int shard, int shards) throws Exception {
+        ShardSnapshot snapshot = this.readSnapshot(shards);
+
+        if (shard < 0 || shard >= shards) {
+            throw new IllegalArgumentException("No shard " + shard + " of " + shards);
+        }
+
+        this.previousManifest = this.readManifest();
+        this.restore(snapshot);
+        this.endPhase("load");
+        this.manifest = new RunManifest();
+        this.publisher = this.createPublisher();
+        this.loaderFiles = new LoaderFiles(this.gson, this.maven.url, this.fabric.url, snapshot.time);
+        this.buildVersions(snapshot.time);
+        this.populateLoaderFiles(game -> ShardSnapshot.shardOf(this.versions.gameVersions[game], shards) == shard);
+        this.endPhase("generate");
+        this.publisher.await();
+        this.endPhase("publish");
+
+        ShardSnapshot.Result result = new ShardSnapshot.Result(snapshot.id, this.manifest.files, this.publisher.takeIndexes());
+
+        this.state.write(ShardSnapshot.Result.key(shard), result.toJson().getBytes(StandardCharsets.UTF_8));
+        this.endPhase("save");
+
+        JsonObject body = new JsonObject();
+        body.addProperty("shard", shard);
+        body.addProperty("files", this.manifest.files.size());
+
+        return body;
+    }
+
+    /**
+     * Publishes the index once every shard has finished, saves the state of the run and deletes stale files.
+     */
+    private JsonObject finishShards(int shards) throws Exception {
+        ShardSnapshot snapshot = this.readSnapshot(shards);
+
+        this.previousManifest = this.readManifest();
+        this.restore(snapshot);
+        this.manifest = new RunManifest();
+        this.manifest.files.putAll(snapshot.files);
+
+        List<Publisher.Upload> indexes = new ArrayList<>(ShardSnapshot.uploads(snapshot.indexes));
+
+        for (int shard = 0; shard < shards; ++shard) {
+            byte[] contents = this.state.read(ShardSnapshot.Result.key(shard));
+            ShardSnapshot.Result result = contents == null ? null : ShardSnapshot.Result.fromJson(new String(contents, StandardCharsets.UTF_8));
+
+            if (result == null || !snapshot.id.equals(result.snapshot)) {
+                throw new IllegalStateException("Shard " + shard + " of " + shards + " has not finished");
+            }
+
+            this.manifest.files.putAll(result.files);
+            indexes.addAll(ShardSnapshot.uploads(result.indexes));
+        }
+
+        this.endPhase("load");
+        this.publisher = this.createPublisher();
+        indexes.forEach(this.publisher::holdIndex);
+        this.buildVersions(snapshot.time);
+        this.uploadProfileIndex(snapshot.time);
+        this.uploadSnapshot();
+        this.endPhase("generate");
+
+        JsonObject versions = this.uploadVersions();
+
+        this.publisher.finish(false);
+        this.endPhase("publish");
+        this.ranStages.putAll(snapshot.stages);
+        this.writeStages();
+        this.writeSnapshotHistory();
+        this.writeManifest();
+        this.endPhase("save");
+        this.publisher.deleteStale(this.config.maxDeleteFraction);
+        this.endPhase("delete");
+
+        return versions;
+    }
+
+    private ShardSnapshot readSnapshot(int shards) throws IOException {
+        byte[] contents = this.state.read(ShardSnapshot.KEY);
+        ShardSnapshot snapshot = contents == null ? null : ShardSnapshot.fromJson(new String(contents, StandardCharsets.UTF_8));
+
+        if (snapshot == null || snapshot.shards != shards) {
+            throw new IllegalStateException("No snapshot for " + shards + " shards, run the coordinate step first");
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Restores the outputs of the populate stages from a snapshot, as if they had run.
+     */
+    private void restore(ShardSnapshot snapshot) {
+        this.arrays.putAll(snapshot.arrays);
+        snapshot.launcherMeta.forEach(this.launcherMetaData::put);
+        index(this.arrays.get("hashed"), this.gameHashedMojmap);
+        index(this.arrays.get("intermediary"), this.gameIntermediaries);
+    }
+
+    private Publisher createPublisher() {
+        return new Publisher(this.bucketStore, this.encoding, this.config.uploadConcurrency,
+                Publisher.getRemoteHashes(this.config.uploadDiff, this.bucketStore, this.previousManifest),
+                this.manifest.files
+        );
+    }
+
+    private void populate() {
+        CompletableFuture.allOf(
+                this.metrics.time("populate.hashed", () -> this.populateHashedMojmapAndGame(FETCH_EXECUTOR)),
+                CompletableFuture.runAsync(() -> this.metrics.time("populate.intermediary", this::populateIntermediaryAndGame), FETCH_EXECUTOR),
+                CompletableFuture.runAsync(() -> this.metrics.time("populate.quiltMappings", this::populateQuiltMappings), FETCH_EXECUTOR),
+                CompletableFuture.runAsync(() -> this.metrics.time("populate.installer", this::populateInstaller), FETCH_EXECUTOR),
+                CompletableFuture.runAsync(() -> this.metrics.time("populate.loader", this::populateLoader), FETCH_EXECUTOR)
+        ).join();
+        this.endPhase("fetch");
+    }
+
+    /**
+     * @param time the time of the run, written into the profiles of game and loader versions that changed
+     */
+    private void buildVersions(String time) {
+        this.versions = VersionTable.build(this.arrays.get("game"), this.arrays.get("loader"),
+                this.gameHashedMojmap, this.gameIntermediaries, this.launcherMetaData);
+        this.loaders = new LoaderFiles.Loader[this.versions.loaders];
+        this.planRegeneration(time);
+    }
+
+    private JsonObject uploadVersions() {
+        JsonObject versions = new JsonObject();
+
+        versions.add("game", this.arrays.get("game"));
+        versions.add("mappings", this.arrays.get("mappings"));
+        versions.add("hashed", this.arrays.get("hashed"));
+        versions.add("loader", this.arrays.get("loader"));
+        versions.add("installer", this.arrays.get("installer"));
+
+        this.upload("v3/versions", versions);
+
+        return versions;
+    }
+
+    /**
+     * Indexes the entries of a populate stage's output by their version, keeping the first of each.
+     */
+    private static void index(JsonArray array, Map<String, JsonObject> entries) {
+        for (JsonElement element : array) {
+            entries.putIfAbsent(element.getAsJsonObject().get("version").getAsString(), element.getAsJsonObject());
+        }
+    }
+
+    /**
+     * Logs the metrics of the run, as an Embedded Metric Format line that CloudWatch turns into metrics.
+     */
+    private void reportMetrics() {
+        this.fetcher.report(this.metrics);
+
+        if (this.publisher != null) {
+            this.publisher.report(this.metrics);
+        }
+
+        this.metrics.recordHeap();
+
+        System.out.println(this.metrics.toEmf(this.config.metricsNamespace));
+    }
+
+    /**
+     * Clears everything derived during the previous invocation, a warm container otherwise serves stale versions.
+     */
+    private void reset() {
+        this.metrics.reset();
+        this.phaseStart = System.nanoTime();
+        this.arrays.clear();
+        this.gameIntermediaries.clear();
+        this.gameHashedMojmap.clear();
+        this.loaderVersions.clear();
+        this.maven.clear();
+        this.fabric.clear();
+        this.dirtyGames.clear();
+        this.dirtyLoaders.clear();
+        this.ranStages.clear();
+        this.publisher = null;
+        this.loaderFiles = null;
+        this.versions = null;
+        this.loaders = null;
+        this.snapshot = null;
+        this.snapshotHistory = null;
+
+        if (!this.warmCache) {
+            this.writtenStages.clear();
+            this.writtenManifest = null;
+        }
+    }
+
+    private void endPhase(String name) {
+        this.metrics.time("phase." + name, this.phaseStart);
+        this.phaseStart = System.nanoTime();
+    }
+
+    /**
+     * @return the metrics of the last invocation, including the wall-clock time spent loading state, fetching,
+     * generating, publishing and saving state
+     */
+    public Metrics getMetrics() {
+        return this.metrics;
     }
 
     private void populateQuiltMappings() {
-        Collection<String> gameVersions = new LinkedHashSet<>();
-        JsonArray qm = new JsonArray();
-        Map<String, JsonArray> qmVersions = new HashMap<>();
+        MavenRepository.ArtifactMetadata metadata = this.maven.getMetadata(this.group, "quilt-mappings");
 
-        try {
-            for (MavenRepository.ArtifactMetadata.Artifact artifact : this.maven.getMetadata(this.group, "quilt-mappings")) {
+        this.stage("quilt-mappings", this.inputs(metadata), record -> {
+            DistinctJsonArray gameVersions = new DistinctJsonArray();
+            JsonArray qm = new JsonArray();
+            Map<String, JsonArray> qmVersions = new HashMap<>();
+
+            for (MavenRepository.ArtifactMetadata.Artifact artifact : metadata) {
                 JsonObject object = new JsonObject();
 
-                String gameVersion = stripInfo(artifact.version);
+                String gameVersion = artifact.parsed.withoutBuild;
                 object.addProperty("gameVersion", gameVersion);
-                object.addProperty("separator", artifact.version.contains("+build.") ? "+build." : ".");
-                object.addProperty("build", Integer.parseInt(artifact.version.substring(artifact.version.lastIndexOf(".") + 1)));
+                object.addProperty("separator", artifact.parsed.separator);
+                object.addProperty("build", artifact.parsed.build);
                 object.addProperty("maven", artifact.mavenId());
                 object.addProperty("version", artifact.version);
 
@@ -124,27 +514,24 @@ public class Meta implements RequestHandler<APIGatewayProxyRequestEvent, APIGate
                 gameVersions.add(gameVersion);
                 qmVersions.computeIfAbsent(gameVersion, v -> new JsonArray()).add(object);
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
 
-        JsonArray array = new JsonArray();
-        gameVersions.forEach(array::add);
+            this.output(record, "mappings", qm);
+            this.upload(record, "v3/versions/game/quilt-mappings", gameVersions.toJsonArray());
+            this.upload(record, "v3/versions/quilt-mappings", qm);
 
-        this.arrays.put("mappings", qm);
-        this.upload("v3/versions/game/quilt-mappings", this.gson.toJson(array));
-        this.upload("v3/versions/quilt-mappings", this.gson.toJson(qm));
-
-        for (Map.Entry<String, JsonArray> entry : qmVersions.entrySet()) {
-            this.upload("v3/versions/quilt-mappings/" + entry.getKey(), this.gson.toJson(entry.getValue()));
-        }
+            for (Map.Entry<String, JsonArray> entry : qmVersions.entrySet()) {
+                this.upload(record, "v3/versions/quilt-mappings/" + entry.getKey(), entry.getValue());
+            }
+        });
     }
 
     private void populateInstaller() {
-        JsonArray installer = new JsonArray();
+        MavenRepository.ArtifactMetadata metadata = this.maven.getMetadata(this.group, this.config.installer);
 
-        try {
-            for (MavenRepository.ArtifactMetadata.Artifact artifact : this.maven.getMetadata(this.group, System.getenv("META_INSTALLER"))) {
+        this.stage("installer", this.inputs(metadata), record -> {
+            JsonArray installer = new JsonArray();
+
+            for (MavenRepository.ArtifactMetadata.Artifact artifact : metadata) {
                 JsonObject object = new JsonObject();
 
                 object.addProperty("url", artifact.url());
@@ -153,117 +540,125 @@ public class Meta implements RequestHandler<APIGatewayProxyRequestEvent, APIGate
 
                 installer.add(object);
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
 
-        this.arrays.put("installer", installer);
-        this.upload("v3/versions/installer", this.gson.toJson(installer));
+            this.output(record, "installer", installer);
+            this.upload(record, "v3/versions/installer", installer);
+        });
     }
 
-    private Runnable populateLoader(ExecutorService executor) {
-        return () -> {
-            CompletableFuture.runAsync(this::populateLoader, executor).join();
+    private void populateLoader() {
+        MavenRepository.ArtifactMetadata metadata = this.maven.getMetadata(this.group, this.config.loader);
 
-            @SuppressWarnings("unchecked")
-            CompletableFuture<Void>[] futures = (CompletableFuture<Void>[]) Array.newInstance(CompletableFuture.class, this.loaderVersions.size());
-            int i = 0;
+        this.stage("loader", this.inputs(metadata), record -> {
+            JsonArray loader = new JsonArray();
 
-            for (MavenRepository.ArtifactMetadata.Artifact artifact : this.loaderVersions) {
-                futures[i++] = CompletableFuture.runAsync(() -> {
-                    try {
-                        URL url = new URL(artifact.url().replace(".jar", ".json"));
-                        JsonElement launcherMeta = JsonParser.parseReader(new InputStreamReader(url.openStream()));
-                        this.launcherMetaData.put(artifact.mavenId(), launcherMeta);
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
-                }, executor);
-            }
+            for (MavenRepository.ArtifactMetadata.Artifact artifact : metadata) {
+                JsonObject object = new JsonObject();
 
-            CompletableFuture.allOf(futures).join();
-        };
-    }
+                object.addProperty("separator", artifact.parsed.separator);
+                object.addProperty("build", artifact.parsed.build);
+                object.addProperty("maven", artifact.mavenId());
+                object.addProperty("version", artifact.parsed.base);
 
-    private void populateLoader() {
-        JsonArray loader = new JsonArray();
+                loader.add(object);
+            }
 
-        try {
-            for (MavenRepository.ArtifactMetadata.Artifact artifact : this.maven.getMetadata(this.group, System.getenv("META_LOADER"))) {
-                JsonObject object = new JsonObject();
+            this.output(record, "loader", loader);
+            this.upload(record, "v3/versions/loader", loader);
+        });
 
-                object.addProperty("separator", artifact.version.contains("+build.") ? "+build." : ".");
-                object.addProperty("build", Integer.parseInt(artifact.version.substring(artifact.version.lastIndexOf(".") + 1)));
-                object.addProperty("maven", artifact.mavenId());
+        for (MavenRepository.ArtifactMetadata.Artifact artifact : metadata) {
+            this.loaderVersions.add(artifact);
+        }
 
-                String version = artifact.version.contains("+build.")
-                        ? artifact.version.substring(0, artifact.version.lastIndexOf('+'))
-                        : artifact.version;
+        this.populateLauncherMeta();
+    }
 
-                object.addProperty("version", version);
+    /**
+     * Fetches the launcher meta of the loader versions that aren't in the cache yet.
+     */
+    private void populateLauncherMeta() {
+        long start = System.nanoTime();
+        int hits = 0;
 
-                loader.add(object);
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Void>[] futures = (CompletableFuture<Void>[]) Array.newInstance(CompletableFuture.class, this.loaderVersions.size());
+        int i = 0;
 
-                this.loaderVersions.add(artifact);
+        for (MavenRepository.ArtifactMetadata.Artifact artifact : this.loaderVersions) {
+            if (this.launcherMetaData.contains(artifact.mavenId())) {
+                futures[i++] = CompletableFuture.completedFuture(null);
+                ++hits;
+                continue;
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+
+            futures[i++] = this.fetcher.getAsyncUncached(artifact.url(".json")).thenAccept(body ->
+                    this.launcherMetaData.put(artifact.mavenId(), JsonParser.parseString(new String(body, StandardCharsets.UTF_8)))
+            );
         }
 
-        this.arrays.put("loader", loader);
-        this.upload("v3/versions/loader", this.gson.toJson(loader));
+        CompletableFuture.allOf(futures).join();
+        this.metrics.time("launcherMeta", start);
+        this.metrics.count("launcherMeta.cached", hits);
+        this.metrics.count("launcherMeta.fetched", futures.length - hits);
     }
 
-    private CompletableFuture<Void> populateIntermediaryAndGame(Executor executor) {
-        return CompletableFuture.runAsync(() -> {
-            Collection<String> gameIntermediary = new LinkedHashSet<>();
+    private void populateIntermediaryAndGame() {
+        MavenRepository.ArtifactMetadata intermediaries = this.fabric.getMetadata("net.fabricmc", "intermediary");
+
+        this.stage("intermediary", this.inputs(intermediaries), record -> {
+            DistinctJsonArray gameIntermediary = new DistinctJsonArray();
             JsonArray intermediary = new JsonArray();
             Map<String, JsonArray> intermediaryVersions = new HashMap<>();
 
-            try {
-                MavenRepository.ArtifactMetadata intermediaries = this.fabric.getMetadata("net.fabricmc", "intermediary");
-
-                for (MavenRepository.ArtifactMetadata.Artifact artifact : intermediaries) {
-                    JsonObject object = new JsonObject();
-
-                    object.addProperty("maven", artifact.mavenId());
-                    object.addProperty("version", artifact.version);
+            for (MavenRepository.ArtifactMetadata.Artifact artifact : intermediaries) {
+                JsonObject object = new JsonObject();
 
-                    intermediary.add(object);
-                    gameIntermediary.add(artifact.version);
-                    this.gameIntermediaries.putIfAbsent(artifact.version, object);
-                    intermediaryVersions.computeIfAbsent(artifact.version, v -> new JsonArray()).add(object);
-                }
+                object.addProperty("maven", artifact.mavenId());
+                object.addProperty("version", artifact.version);
 
-                JsonArray array = new JsonArray();
-                gameIntermediary.forEach(array::add);
+                intermediary.add(object);
+                gameIntermediary.add(artifact.version);
+                intermediaryVersions.computeIfAbsent(artifact.version, v -> new JsonArray()).add(object);
+            }
 
-                this.arrays.put("intermediary", intermediary);
-                this.upload("v3/versions/game/intermediary", this.gson.toJson(array));
-                this.upload("v3/versions/intermediary", this.gson.toJson(intermediary));
+            this.output(record, "intermediary", intermediary);
+            this.upload(record, "v3/versions/game/intermediary", gameIntermediary.toJsonArray());
+            this.upload(record, "v3/versions/intermediary", intermediary);
 
-                for (Map.Entry<String, JsonArray> entry : intermediaryVersions.entrySet()) {
-                    this.upload("v3/versions/intermediary/" + entry.getKey(), this.gson.toJson(entry.getValue()));
-                }
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+            for (Map.Entry<String, JsonArray> entry : intermediaryVersions.entrySet()) {
+                this.upload(record, "v3/versions/intermediary/" + entry.getKey(), entry.getValue());
             }
         });
+
+        index(this.arrays.get("intermediary"), this.gameIntermediaries);
     }
 
     private CompletableFuture<Void> populateHashedMojmapAndGame(Executor executor) {
-        Collection<String> gameHashed = new LinkedHashSet<>();
-        JsonArray hashed = new JsonArray();
-        Map<String, JsonArray> hashedVersions = new HashMap<>();
+        MavenRepository.ArtifactMetadata hashedMojmap = this.maven.getMetadata(this.group, "hashed");
 
-        try {
-            MavenRepository.ArtifactMetadata hashedMojmap = this.maven.getMetadata(this.group, "hashed");
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+            long start = System.nanoTime();
+            byte[] manifest;
 
-            CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
-                JsonArray meta = MinecraftMeta.get(hashedMojmap, gson);
-                this.arrays.put("game", meta);
-                this.upload("v3/versions/game", this.gson.toJson(meta));
-            }, executor);
+            try {
+                manifest = this.fetcher.get(this.config.minecraftManifestUrl);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            this.metrics.time("populate.game", start);
+            this.stage("game", this.inputs(hashedMojmap, Hashing.md5(manifest)), record -> {
+                JsonArray meta = MinecraftMeta.get(hashedMojmap, gson, manifest);
+                this.output(record, "game", meta);
+                this.upload(record, "v3/versions/game", meta);
+            });
+        }, executor);
+
+        this.stage("hashed", this.inputs(hashedMojmap), record -> {
+            DistinctJsonArray gameHashed = new DistinctJsonArray();
+            JsonArray hashed = new JsonArray();
+            Map<String, JsonArray> hashedVersions = new HashMap<>();
 
             for (MavenRepository.ArtifactMetadata.Artifact artifact : hashedMojmap) {
                 JsonObject object = new JsonObject();
@@ -273,189 +668,435 @@ public class Meta implements RequestHandler<APIGatewayProxyRequestEvent, APIGate
 
                 hashed.add(object);
                 gameHashed.add(artifact.version);
-                this.gameHashedMojmap.putIfAbsent(artifact.version, object);
                 hashedVersions.computeIfAbsent(artifact.version, v -> new JsonArray()).add(object);
             }
 
-            JsonArray array = new JsonArray();
-            gameHashed.forEach(array::add);
-
-            this.arrays.put("hashed", hashed);
-            this.upload("v3/versions/game/hashed", this.gson.toJson(array));
-            this.upload("v3/versions/hashed", this.gson.toJson(hashed));
+            this.output(record, "hashed", hashed);
+            this.upload(record, "v3/versions/game/hashed", gameHashed.toJsonArray());
+            this.upload(record, "v3/versions/hashed", hashed);
 
             for (Map.Entry<String, JsonArray> entry : hashedVersions.entrySet()) {
-                this.upload("v3/versions/hashed/" + entry.getKey(), this.gson.toJson(entry.getValue()));
+                this.upload(record, "v3/versions/hashed/" + entry.getKey(), entry.getValue());
             }
+        });
 
-            return future;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-    }
+        index(this.arrays.get("hashed"), this.gameHashedMojmap);
 
-    private void populateLoaderVersions() {
-        for (JsonElement gameVersionElement : this.arrays.get("game")) {
-            String gameVersion = gameVersionElement.getAsJsonObject().get("version").getAsString();
-            JsonArray gameLoaderVersion = new JsonArray();
+        return future;
+    }
 
-            for (JsonElement loaderVersionElement : this.arrays.get("loader")) {
-                String loaderVersion = loaderVersionElement.getAsJsonObject().get("version").getAsString();
+    /**
+     * Fingerprints the inputs of a stage, along with everything that changes the shape of the files it generates.
+     *
+     * @param inputs the maven metadata the stage reads, followed by hashes of any other files it reads
+     */
+    private String inputs(MavenRepository.ArtifactMetadata metadata, String... inputs) {
+        StringBuilder builder = new StringBuilder()
+                .append(RunManifest.FORMAT).append('/')
+                .append(this.compact).append('/')
+                .append(this.encoding).append('/')
+                .append(metadata.group).append(':').append(metadata.name).append('/')
+                .append(metadata.lastUpdated()).append('/')
+                .append(metadata.fingerprint);
+
+        for (String input : inputs) {
+            builder.append('/').append(input);
+        }
 
-                JsonObject object = new JsonObject();
+        return Hashing.md5(builder.toString());
+    }
 
-                object.add("loader", loaderVersionElement);
-                object.add("hashed", this.gameHashedMojmap.get(gameVersion));
-                object.add("intermediary", this.gameIntermediaries.get(gameVersion));
-                object.add("launcherMeta", this.launcherMetaData.get(
-                        loaderVersionElement.getAsJsonObject().get("maven").getAsString()
-                ));
+    /**
+     * Runs a stage, or skips it and restores its outputs when its inputs are unchanged since the last successful run.
+     *
+     * @return the record of the stage, holding its outputs either way
+     */
+    private StageRecord stage(String name, String inputs, Consumer<StageRecord> stage) {
+        StageRecord previous = this.incremental ? this.readStage(name) : null;
 
-                gameLoaderVersion.add(object);
+        if (previous != null && inputs.equals(previous.inputs)) {
+            this.metrics.count("stages.skipped", 1);
 
-                this.upload(String.format("v3/versions/loader/%s/%s", gameVersion, loaderVersion), this.gson.toJson(object));
+            for (Map.Entry<String, JsonElement> output : previous.outputs.entrySet()) {
+                if (output.getValue().isJsonArray()) {
+                    this.arrays.put(output.getKey(), output.getValue().getAsJsonArray());
+                }
             }
 
-            this.upload(String.format("v3/versions/loader/%s", gameVersion), this.gson.toJson(gameLoaderVersion));
+            previous.files.forEach(this::carryOver);
+
+            return previous;
         }
+
+        StageRecord record = new StageRecord(inputs);
+
+        this.metrics.count("stages.ran", 1);
+        this.metrics.time("stage." + name, () -> stage.accept(record));
+        this.ranStages.put(name, record);
+
+        return record;
+    }
+
+    private void output(StageRecord record, String name, JsonArray array) {
+        record.outputs.put(name, array);
+        this.arrays.put(name, array);
     }
 
-    private void populateProfiles() {
-        String currentTime = ISO_8601.format(new Date());
+    private StageRecord readStage(String name) {
+        StageRecord record = this.writtenStages.get(name);
 
-        for (Side side : Side.values()) {
-            for (JsonElement gameVersionElement : this.arrays.get("game")) {
-                String gameVersion = gameVersionElement.getAsJsonObject().get("version").getAsString();
+        if (record != null) {
+            return record;
+        }
 
-                for (JsonElement loaderVersionElement : this.arrays.get("loader")) {
-                    String loaderVersion = loaderVersionElement.getAsJsonObject().get("version").getAsString();
+        try {
+            byte[] contents = this.state.read(StageRecord.key(name));
 
-                    JsonObject hashed = this.gameHashedMojmap.get(gameVersion);
-                    JsonObject intermediary = this.gameIntermediaries.get(gameVersion);
+            return contents == null ? null : StageRecord.fromJson(new String(contents, StandardCharsets.UTF_8));
+        } catch (IOException | JsonParseException e) {
+            System.out.println("Failed to read stage " + name + ": " + e);
+            return null;
+        }
+    }
 
-                    JsonObject launcherMeta = this.launcherMetaData.get(
-                            loaderVersionElement.getAsJsonObject().get("maven").getAsString()
-                    ).getAsJsonObject();
+    /**
+     * Saves the records of the stages that ran, once everything they published is in the bucket.
+     */
+    private void writeStages() throws IOException {
+        for (Map.Entry<String, StageRecord> entry : this.ranStages.entrySet()) {
+            this.state.write(StageRecord.key(entry.getKey()), entry.getValue().toJson().getBytes(StandardCharsets.UTF_8));
 
-                    JsonArray libraries = new JsonArray();
+            if (this.warmCache) {
+                this.writtenStages.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
 
-                    libraries.addAll(launcherMeta.get("libraries").getAsJsonObject().get("common").getAsJsonArray());
-                    libraries.add(getLibrary(hashed.get("maven").getAsString(), this.maven.url));
-                    libraries.add(getLibrary(intermediary.get("maven").getAsString(), this.fabric.url));
-                    libraries.add(getLibrary(loaderVersionElement.getAsJsonObject().get("maven").getAsString(), this.maven.url));
+    /**
+     * @return whether files generated by a previous run can be carried over instead of being generated again
+     */
+    private boolean canReuse(RunManifest previous) {
+        return this.incremental && previous != null && previous.compact == this.compact
+                && this.encoding.toString().equals(previous.encoding)
+                && previous.lazyProfiles == this.config.lazyProfiles;
+    }
 
-                    if (launcherMeta.get("libraries").getAsJsonObject().has(side.side)) {
-                        libraries.addAll(launcherMeta.get("libraries").getAsJsonObject().get(side.side).getAsJsonArray());
-                    }
+    private void planRegeneration(String time) {
+        RunManifest previous = this.canReuse(this.previousManifest) ? this.previousManifest : null;
+        RunManifest last = this.previousManifest;
+        VersionTable versions = this.versions;
+        BitSet changedGames = new BitSet(versions.games);
+        BitSet changedLoaders = new BitSet(versions.loaders);
+
+        this.manifest.compact = this.compact;
+        this.manifest.encoding = this.encoding.toString();
+        this.manifest.lazyProfiles = this.config.lazyProfiles;
+        this.dirtyGames.clear();
+        this.dirtyLoaders.clear();
+
+        for (int game = 0; game < versions.games; ++game) {
+            String gameVersion = versions.gameVersions[game];
+            String fingerprint = Hashing.md5(versions.gameElements[game] + "/"
+                    + versions.hashed[game] + "/"
+                    + versions.intermediary[game]);
+
+            this.manifest.games.put(gameVersion, fingerprint);
+
+            if (previous == null || !fingerprint.equals(previous.games.get(gameVersion))) {
+                this.dirtyGames.set(game);
+            }
 
-                    JsonObject arguments = new JsonObject();
-                    arguments.add("game", new JsonArray());
+            if (last == null || !fingerprint.equals(last.games.get(gameVersion))) {
+                changedGames.set(game);
+            }
+        }
 
-                    JsonObject object = new JsonObject();
+        for (int loader = 0; loader < versions.loaders; ++loader) {
+            String loaderMaven = versions.loaderMavens[loader];
+            String fingerprint = Hashing.md5(versions.loaderElements[loader] + "/" + versions.launcherMeta[loader]);
 
-                    object.addProperty("id", String.format("quilt-loader-%s-%s", loaderVersion, gameVersion));
-                    object.addProperty("inheritsFrom", gameVersion);
-                    object.addProperty("releaseTime", currentTime);
-                    object.addProperty("time", currentTime);
-                    object.addProperty("type", "release");
+            this.manifest.loaders.put(loaderMaven, fingerprint);
 
-                    if (launcherMeta.get("mainClass").isJsonObject()) {
-                        object.addProperty("mainClass", launcherMeta.get("mainClass").getAsJsonObject().get(side.side).getAsString());
-                    }
+            if (previous == null || !fingerprint.equals(previous.loaders.get(loaderMaven))) {
+                this.dirtyLoaders.set(loader);
+            }
 
-                    if (side == Side.SERVER && launcherMeta.has("mainClass") && launcherMeta.get("mainClass").getAsJsonObject().has("serverLauncher")) {
-                        // Add the server launch main class
-                        object.addProperty("launcherMainClass", launcherMeta.get("mainClass").getAsJsonObject().get("serverLauncher").getAsString());
-                    }
+            if (last == null || !fingerprint.equals(last.loaders.get(loaderMaven))) {
+                changedLoaders.set(loader);
+            }
+        }
 
-                    object.add("arguments", arguments);
-                    object.add("libraries", libraries);
+        // Profiles keep the time they were first published with, so a full run renders them byte for byte the same
+        // and the upload diff skips them
+        if (!this.config.lazyProfiles) {
+            for (int game = 0; game < versions.games; ++game) {
+                for (int loader = 0; loader < versions.loaders; ++loader) {
+                    String pair = versions.gameVersions[game] + "/" + versions.loaderVersions[loader];
+                    String previousTime = changedGames.get(game) || changedLoaders.get(loader) ? null : last.profileTimes.get(pair);
 
-                    this.upload(String.format("v3/versions/loader/%s/%s/%s/json", gameVersion, loaderVersion, side.type), this.gson.toJson(object));
+                    this.manifest.profileTimes.put(pair, previousTime == null ? time : previousTime);
                 }
             }
         }
+
+        this.loadersChanged = previous == null || !this.dirtyLoaders.isEmpty()
+                || !new ArrayList<>(this.manifest.loaders.keySet()).equals(new ArrayList<>(previous.loaders.keySet()));
     }
 
-    private void upload(String fileName, String fileContents) {
-        this.upload(fileName, fileContents.getBytes(StandardCharsets.UTF_8), "application/json");
+    private boolean isDirty(int game, int loader) {
+        return this.dirtyGames.get(game) || this.dirtyLoaders.get(loader);
     }
 
-    private void upload(String fileName, byte[] fileContents, String contentType) {
-        this.files.put(fileName, Pair.of(fileContents, contentType));
+    /**
+     * Carries the hash of a file that is not being regenerated over from the previous run.
+     *
+     * @return false if the file is missing from the previous manifest and must be regenerated
+     */
+    private boolean retain(String fileName) {
+        String hash = this.previousManifest == null ? null : this.previousManifest.files.get(fileName);
+
+        if (hash == null) {
+            return false;
+        }
+
+        this.carryOver(fileName, hash);
+        this.metrics.count("files.retained", 1);
+
+        return true;
+    }
+
+    /**
+     * Records the hash of a file published by a previous run, and that of its encoded variant.
+     */
+    private void carryOver(String fileName, String hash) {
+        this.manifest.files.put(fileName, hash);
+
+        if (this.encoding.contentEncoding != null && this.previousManifest != null) {
+            String variant = this.encoding.variant(fileName);
+            String variantHash = this.previousManifest.files.get(variant);
+
+            if (variantHash != null) {
+                this.manifest.files.put(variant, variantHash);
+            }
+        }
     }
 
-    private void upload() {
-        ExecutorService executor = Executors.newFixedThreadPool(50);
-        S3Client s3 = S3Client.create();
-        String bucket = System.getenv("META_BUCKET");
+    /**
+     * Generates the loader versions and profiles of the given game versions in parallel, one task per game version.
+     */
+    private void populateLoaderFiles(IntPredicate included) {
+        int games = this.versions.games;
+        int regenerated = 0;
+        int count = 0;
 
         @SuppressWarnings("unchecked")
-        CompletableFuture<Void>[] futures = (CompletableFuture<Void>[]) Array.newInstance(CompletableFuture.class, this.files.size());
-        int i = 0;
+        CompletableFuture<Void>[] futures = (CompletableFuture<Void>[]) Array.newInstance(CompletableFuture.class, games);
 
-        for (String file : this.files.keySet()) {
-            futures[i++] = CompletableFuture.runAsync(() -> {
-                Pair<byte[], String> pair = this.files.get(file);
-                byte[] contentBytes = pair.left();
-
-                PutObjectRequest.Builder builder = PutObjectRequest.builder();
-                builder.bucket(bucket);
-                builder.key(file);
-                builder.contentType(pair.right());
-                builder.contentLength((long) contentBytes.length);
-
-                try {
-                    s3.putObject(builder.build(), RequestBody.fromBytes(contentBytes));
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
+        for (int i = 0; i < games; ++i) {
+            int game = i;
+
+            if (!included.test(game)) {
+                futures[i] = CompletableFuture.completedFuture(null);
+                continue;
+            }
+
+            count++;
+
+            if (this.dirtyGames.get(game)) {
+                regenerated++;
+            }
+
+            futures[i] = CompletableFuture.runAsync(() -> {
+                String prefix = "v3/versions/loader/" + this.versions.gameVersions[game];
+                LoaderFiles.Game files = this.loaderFiles.game(this.versions.gameVersions[game],
+                        this.versions.hashed[game], this.versions.intermediary[game]);
+
+                this.metrics.time("loaderVersions", () -> this.populateLoaderVersions(game, files, prefix));
+
+                if (!this.config.lazyProfiles) {
+                    this.metrics.time("profiles", () -> this.populateProfiles(game, files, prefix));
                 }
-            }, executor);
+            }, GENERATION_EXECUTOR);
         }
 
+        System.out.printf("Regenerating %d of %d game versions and %d of %d loader versions%n",
+                regenerated, count,
+                this.dirtyLoaders.cardinality(), this.versions.loaders
+        );
+
         CompletableFuture.allOf(futures).join();
     }
 
-    private static String stripInfo(String version) {
-        if (version.contains("+build.")) {
-            return version.substring(0, version.lastIndexOf('+'));
-        } else {
-            //TODO legacy remove when no longer needed
-            char verSep = version.contains("-") ? '-' : '.';
-            return version.substring(0, version.lastIndexOf(verSep));
+    private void populateLoaderVersions(int game, LoaderFiles.Game files, String prefix) {
+        boolean gameDirty = this.dirtyGames.get(game) || this.loadersChanged || !this.retain(prefix);
+        List<LoaderFiles.Loader> loaders = new ArrayList<>();
+
+        for (int loader = 0; loader < this.versions.loaders; ++loader) {
+            String fileName = prefix + "/" + this.versions.loaderVersions[loader];
+            boolean dirty = this.isDirty(game, loader) || !this.retain(fileName);
+
+            if (!gameDirty && !dirty) {
+                continue;
+            }
+
+            LoaderFiles.Loader loaderFiles = this.getLoader(loader);
+
+            loaders.add(loaderFiles);
+
+            if (dirty) {
+                this.upload(fileName, this.loaderFiles.loaderVersion(files, loaderFiles), "application/json");
+            }
+        }
+
+        if (gameDirty) {
+            this.upload(prefix, this.loaderFiles.loaderVersions(files, loaders), "application/json");
         }
     }
 
-    private static <T> JsonArray toJson(Iterable<T> items, Function<T, JsonElement> function) {
-        JsonArray array = new JsonArray();
+    private void populateProfiles(int game, LoaderFiles.Game files, String prefix) {
+        for (LoaderFiles.Side side : LoaderFiles.Side.values()) {
+            String suffix = "/" + side.type + "/json";
+
+            for (int loader = 0; loader < this.versions.loaders; ++loader) {
+                String pair = this.versions.gameVersions[game] + "/" + this.versions.loaderVersions[loader];
+                String fileName = prefix + "/" + this.versions.loaderVersions[loader] + suffix;
 
-        for (T t : items) {
-            JsonElement element = function.apply(t);
+                if (!this.isDirty(game, loader) && this.retain(fileName)) {
+                    continue;
+                }
 
-            if (element != null && !array.contains(element)) {
-                array.add(element);
+                this.upload(fileName, this.loaderFiles.profile(files, this.getLoader(loader), side, this.manifest.profileTimes.get(pair)), "application/json");
             }
         }
+    }
+
+    /**
+     * Publishes the index profiles are rendered from on request, when they aren't published themselves.
+     *
+     * @param time the time of the run, written into every profile
+     */
+    private void uploadProfileIndex(String time) {
+        if (this.config.lazyProfiles) {
+            this.upload(ProfileIndex.KEY, ProfileIndex.build(this.versions, this.compact, time, this.maven.url, this.fabric.url).toBytes(), "application/json");
+        }
+    }
+
+    /**
+     * Publishes the bulk snapshot of the version graph, with a delta from the previous one if it changed.
+     */
+    private void uploadSnapshot() throws IOException {
+        BulkSnapshot snapshot = BulkSnapshot.build(this.arrays, this.launcherMetaData);
+        BulkSnapshot.History history = BulkSnapshot.History.read(this.state);
+        BulkSnapshot previous = history.hash == null || history.hash.equals(snapshot.hash) ? null : history.readPrevious(this.state);
+
+        if (previous != null) {
+            this.upload(BulkSnapshot.deltaKey(previous.hash), snapshot.delta(previous), "application/x-ndjson");
+        }
+
+        if (previous == null && history.hash != null && !history.hash.equals(snapshot.hash)) {
+            // Without the records of the last snapshot there's no delta to this one, so earlier deltas lead nowhere
+            history.deltas.clear();
+        }
+
+        // Deltas published by earlier runs carry over, unless they went missing
+        history.deltas.removeIf(from -> !this.retain(BulkSnapshot.deltaKey(from)));
+        history.advance(previous == null ? null : previous.hash, snapshot.hash);
+
+        this.upload(BulkSnapshot.ndjsonKey(snapshot.hash), snapshot.ndjson, "application/x-ndjson");
+        this.upload(BulkSnapshot.binaryKey(snapshot.hash), snapshot.toBinary(), "application/octet-stream");
+        this.upload(BulkSnapshot.LATEST, snapshot.latest(history.deltas));
+
+        this.snapshot = snapshot;
+        this.snapshotHistory = history;
+    }
+
+    /**
+     * Saves what the next run makes its delta against, once the snapshot is in the bucket.
+     */
+    private void writeSnapshotHistory() throws IOException {
+        if (this.snapshotHistory != null) {
+            this.snapshotHistory.write(this.state, this.snapshot);
+        }
+    }
+
+    /**
+     * Gets the fragments of a loader version, created the first time any game version needs them.
+     */
+    private LoaderFiles.Loader getLoader(int loader) {
+        LoaderFiles.Loader files = this.loaders[loader];
+
+        if (files == null) {
+            // Racing threads get the same instance back from LoaderFiles
+            files = this.loaderFiles.loader(this.versions.loaderElements[loader], this.versions.launcherMeta[loader]);
+            this.loaders[loader] = files;
+        }
+
+        return files;
+    }
+
+    private void upload(StageRecord record, String fileName, JsonElement element) {
+        try {
+            byte[] contents = this.output.get().toBytes(element);
+            long start = System.nanoTime();
+
+            record.files.put(fileName, this.publish(fileName, contents, "application/json"));
+            this.metrics.time("upload", start);
+            this.metrics.count("generated.files", 1);
+            this.metrics.bytes("generated.bytes", contents.length);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void upload(String fileName, JsonElement element) {
+        try {
+            this.upload(fileName, this.output.get().toBytes(element), "application/json");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void upload(String fileName, byte[] fileContents, String contentType) {
+        long start = System.nanoTime();
+
+        this.publish(fileName, fileContents, contentType);
+        this.metrics.time("upload", start);
+        this.metrics.count("generated.files", 1);
+        this.metrics.bytes("generated.bytes", fileContents.length);
+    }
 
-        return array;
+    private String publish(String fileName, byte[] contents, String contentType) {
+        return isIndex(fileName)
+                ? this.publisher.publishIndex(fileName, contents, contentType)
+                : this.publisher.publish(fileName, contents, contentType);
     }
 
-    private static JsonObject getLibrary(String mavenPath, String url) {
-        JsonObject jsonObject = new JsonObject();
-        jsonObject.addProperty("name", mavenPath);
-        jsonObject.addProperty("url", url);
-        return jsonObject;
+    /**
+     * @return whether a file is one of the top-level lists readers start from, which go out after every other file so
+     * the tree readers see changes over at once
+     */
+    static boolean isIndex(String fileName) {
+        if (fileName.equals(ProfileIndex.KEY) || fileName.equals(BulkSnapshot.LATEST) || fileName.equals("v3/versions")) {
+            return true;
+        }
+
+        String[] parts = fileName.split("/");
+
+        // v3/versions/<type> and v3/versions/game/<type>, but not the lists of single versions below them
+        return fileName.startsWith("v3/versions/") && (parts.length == 3 || parts.length == 4 && parts[2].equals("game"));
     }
 
-    private enum Side {
-        CLIENT("client", "profile"), SERVER("server", "server");
+    private RunManifest readManifest() throws IOException {
+        byte[] contents = this.state.read(RunManifest.KEY);
 
-        final String side;
-        final String type;
+        return contents == null ? null : RunManifest.fromJson(new String(contents, StandardCharsets.UTF_8));
+    }
 
-        Side(String side, String type) {
-            this.side = side;
-            this.type = type;
+    private void writeManifest() throws IOException {
+        if (this.manifest.equals(this.previousManifest)) {
+            return;
         }
+
+        this.state.write(RunManifest.KEY, this.manifest.toJson().getBytes(StandardCharsets.UTF_8));
     }
 }
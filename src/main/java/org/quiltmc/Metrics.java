@@ -0,0 +1,172 @@
+package org.quiltmc;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Durations, sizes and counts of one run, written to the log as a single line of CloudWatch Embedded Metric Format so
+ * they show up as metrics without any calls to CloudWatch.
+ *
+ * <p>Every method is thread safe. Durations recorded from several threads at once are summed, so they add up to more
+ * than the wall-clock time of the run.
+ */
+public class Metrics {
+    private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Clears everything recorded and starts tracking the peak heap usage again.
+     */
+    public void reset() {
+        this.metrics.clear();
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    public void count(String name, long count) {
+        this.add(name, Unit.COUNT, count);
+    }
+
+    public void bytes(String name, long bytes) {
+        this.add(name, Unit.BYTES, bytes);
+    }
+
+    /**
+     * Adds the time elapsed since a {@link System#nanoTime()}.
+     */
+    public void time(String name, long startNanos) {
+        this.add(name, Unit.MILLISECONDS, System.nanoTime() - startNanos);
+    }
+
+    public void time(String name, Runnable action) {
+        long start = System.nanoTime();
+
+        try {
+            action.run();
+        } finally {
+            this.time(name, start);
+        }
+    }
+
+    public <T> T time(String name, Supplier<T> action) {
+        long start = System.nanoTime();
+
+        try {
+            return action.get();
+        } finally {
+            this.time(name, start);
+        }
+    }
+
+    private void add(String name, Unit unit, long value) {
+        this.metrics.computeIfAbsent(name, n -> new Metric(unit)).value.add(value);
+    }
+
+    /**
+     * @return the value of a metric in its unit, or 0 if nothing was recorded
+     */
+    public double get(String name) {
+        Metric metric = this.metrics.get(name);
+
+        return metric == null ? 0 : metric.get();
+    }
+
+    /**
+     * @return the values of every metric in their units, by name
+     */
+    public Map<String, Double> values() {
+        Map<String, Double> values = new TreeMap<>();
+
+        this.metrics.forEach((name, metric) -> values.put(name, metric.get()));
+
+        return values;
+    }
+
+    /**
+     * Records the peak heap usage since the last {@link #reset()}, summed over the heap pools.
+     */
+    public void recordHeap() {
+        long peak = 0;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        this.bytes("heap.peak", peak);
+        this.bytes("heap.max", Runtime.getRuntime().maxMemory());
+    }
+
+    /**
+     * @return an Embedded Metric Format log line holding every metric, with no dimensions
+     */
+    public String toEmf(String namespace) {
+        JsonObject root = new JsonObject();
+        JsonObject aws = new JsonObject();
+        JsonObject directive = new JsonObject();
+        JsonArray dimensions = new JsonArray();
+        JsonArray definitions = new JsonArray();
+        Map<String, Metric> metrics = new TreeMap<>(this.metrics);
+
+        dimensions.add(new JsonArray());
+        directive.addProperty("Namespace", namespace);
+        directive.add("Dimensions", dimensions);
+        directive.add("Metrics", definitions);
+
+        JsonArray directives = new JsonArray();
+        directives.add(directive);
+        aws.addProperty("Timestamp", System.currentTimeMillis());
+        aws.add("CloudWatchMetrics", directives);
+        root.add("_aws", aws);
+
+        for (Map.Entry<String, Metric> entry : metrics.entrySet()) {
+            JsonObject definition = new JsonObject();
+
+            definition.addProperty("Name", entry.getKey());
+            definition.addProperty("Unit", entry.getValue().unit.name);
+            definitions.add(definition);
+            root.addProperty(entry.getKey(), entry.getValue().unit == Unit.MILLISECONDS ? (Number) entry.getValue().get() : entry.getValue().value.sum());
+        }
+
+        return root.toString();
+    }
+
+    private static class Metric {
+        final Unit unit;
+        /**
+         * The sum of what was recorded, in nanoseconds for durations.
+         */
+        final LongAdder value = new LongAdder();
+
+        Metric(Unit unit) {
+            this.unit = unit;
+        }
+
+        double get() {
+            return this.unit == Unit.MILLISECONDS ? this.value.sum() / 1e6 : this.value.sum();
+        }
+    }
+
+    private enum Unit {
+        COUNT("Count"), BYTES("Bytes"), MILLISECONDS("Milliseconds");
+
+        final String name;
+
+        Unit(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -3,26 +3,12 @@ package org.quiltmc;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
-import jdk.nashorn.api.scripting.URLReader;
 
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 public class MinecraftMeta {
-    private static final URL MANIFEST;
-
-    static {
-        URL url = null;
-
-        try {
-            url = new URL("https://launchermeta.mojang.com/mc/game/version_manifest.json");
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
-        }
-
-        MANIFEST = url;
-    }
+    public static final String MANIFEST = "https://launchermeta.mojang.com/mc/game/version_manifest.json";
 
     private MinecraftMeta() {
     }
@@ -30,10 +16,13 @@ public class MinecraftMeta {
     @SuppressWarnings({"unused", "MismatchedQueryAndUpdateOfCollection"})
     private List<Version> versions;
 
-    public static JsonArray get(MavenRepository.ArtifactMetadata hashedMojmap, Gson gson) {
+    /**
+     * @param manifest the contents of the {@link #MANIFEST}
+     */
+    public static JsonArray get(MavenRepository.ArtifactMetadata hashedMojmap, Gson gson, byte[] manifest) {
         JsonArray versions = new JsonArray();
 
-        MinecraftMeta meta = gson.fromJson(new URLReader(MANIFEST), MinecraftMeta.class);
+        MinecraftMeta meta = gson.fromJson(new String(manifest, StandardCharsets.UTF_8), MinecraftMeta.class);
 
         for (Version version : meta.versions) {
             if (hashedMojmap.contains(version.id)) {
@@ -0,0 +1,23 @@
+package org.quiltmc;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates numbered daemon threads, so pools that live as long as the container never keep it from shutting down.
+ */
+public class NamedThreadFactory implements ThreadFactory {
+    private final String name;
+    private final AtomicInteger count = new AtomicInteger();
+
+    public NamedThreadFactory(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, this.name + "-" + this.count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
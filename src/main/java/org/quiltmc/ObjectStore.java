@@ -0,0 +1,46 @@
+package org.quiltmc;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * The bucket the generated files are published to.
+ */
+public interface ObjectStore {
+    /**
+     * @param contentEncoding the {@code Content-Encoding} of the contents, or null if they aren't encoded
+     * @param cacheControl    the {@code Cache-Control} to serve the object with, or null for the store's default
+     */
+    CompletableFuture<Void> put(String key, byte[] contents, String contentType, String contentEncoding, String cacheControl);
+
+    /**
+     * @return the ETag of every object under the prefix, without quotes
+     */
+    default Map<String, String> list(String prefix) {
+        Map<String, String> etags = new HashMap<>();
+
+        this.list(prefix, etags::put);
+
+        return etags;
+    }
+
+    /**
+     * Lists the objects under the prefix a page at a time, without holding the whole listing in memory.
+     *
+     * @param objects receives the key and the ETag, without quotes, of every object in turn
+     */
+    void list(String prefix, BiConsumer<String, String> objects);
+
+    /**
+     * Deletes up to 1000 objects in one request.
+     */
+    void delete(List<String> keys);
+
+    /**
+     * @return whether a failed {@link #put} is worth retrying, such as when the store is throttling requests
+     */
+    boolean isRetryable(Throwable error);
+}
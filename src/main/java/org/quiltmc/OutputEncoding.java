@@ -0,0 +1,147 @@
+package org.quiltmc;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes generated files into pre-compressed variants, published next to the files at {@code <key>.gz} with a
+ * matching {@code Content-Encoding}. The files themselves are always published as they are, so clients that don't
+ * accept gzip or read the bucket directly still get JSON; serving the variants to clients that do is up to the edge.
+ *
+ * <p>Gzip output is deterministic for a given level, so unchanged files still hash the same from one run to the next.
+ * Brotli isn't available without a native library, so only gzip is offered.
+ */
+public class OutputEncoding {
+    public static final OutputEncoding IDENTITY = new OutputEncoding(null, Deflater.DEFAULT_COMPRESSION, null);
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    /**
+     * The {@code Content-Encoding} of encoded files, or null if they are stored as they are.
+     */
+    public final String contentEncoding;
+    public final String cacheControl;
+    private final int level;
+    private final ThreadLocal<Deflater> deflater;
+    private final ThreadLocal<ByteArrayOutputStream> buffer = ThreadLocal.withInitial(() -> new ByteArrayOutputStream(16 * 1024));
+    private final ThreadLocal<byte[]> chunk = ThreadLocal.withInitial(() -> new byte[8192]);
+    private final AtomicLong inputBytes = new AtomicLong();
+    private final AtomicLong outputBytes = new AtomicLong();
+    private final AtomicLong cpuNanos = new AtomicLong();
+
+    public OutputEncoding(String contentEncoding, int level, String cacheControl) {
+        this.contentEncoding = contentEncoding;
+        this.cacheControl = cacheControl;
+        this.level = level;
+        this.deflater = ThreadLocal.withInitial(() -> new Deflater(level, true));
+    }
+
+    /**
+     * Reads {@code META_ENCODING} ({@code identity} or {@code gzip}), {@code META_GZIP_LEVEL} and
+     * {@code META_CACHE_CONTROL}.
+     */
+    public static OutputEncoding fromEnvironment(Map<String, String> environment) {
+        String encoding = environment.getOrDefault("META_ENCODING", "identity").toLowerCase(Locale.ROOT);
+        int level = Integer.parseInt(environment.getOrDefault("META_GZIP_LEVEL", "9"));
+        String cacheControl = environment.get("META_CACHE_CONTROL");
+
+        switch (encoding) {
+            case "identity":
+                return cacheControl == null ? IDENTITY : new OutputEncoding(null, level, cacheControl);
+            case "gzip":
+                return new OutputEncoding("gzip", level, cacheControl);
+            default:
+                throw new IllegalArgumentException("Unsupported encoding " + encoding);
+        }
+    }
+
+    /**
+     * @return the key the encoded variant of a file is published at
+     */
+    public String variant(String key) {
+        return key + ".gz";
+    }
+
+    public byte[] encode(byte[] contents) {
+        if (this.contentEncoding == null) {
+            return contents;
+        }
+
+        long start = cpuTime();
+        byte[] encoded = this.gzip(contents);
+
+        this.cpuNanos.addAndGet(cpuTime() - start);
+        this.inputBytes.addAndGet(contents.length);
+        this.outputBytes.addAndGet(encoded.length);
+
+        return encoded;
+    }
+
+    private byte[] gzip(byte[] contents) {
+        Deflater deflater = this.deflater.get();
+        ByteArrayOutputStream out = this.buffer.get();
+        byte[] chunk = this.chunk.get();
+        CRC32 crc = new CRC32();
+
+        crc.update(contents, 0, contents.length);
+        deflater.reset();
+        deflater.setInput(contents);
+        deflater.finish();
+        out.reset();
+        out.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+
+        writeInt(out, (int) crc.getValue());
+        writeInt(out, contents.length);
+
+        return out.toByteArray();
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * @return the size reduction and CPU time spent encoding since the last report, or null if nothing was encoded
+     */
+    public String report() {
+        long inputBytes = this.inputBytes.getAndSet(0);
+        long outputBytes = this.outputBytes.getAndSet(0);
+        long cpuNanos = this.cpuNanos.getAndSet(0);
+
+        if (inputBytes == 0) {
+            return null;
+        }
+
+        double input = inputBytes / (1024.0 * 1024.0);
+        double output = outputBytes / (1024.0 * 1024.0);
+
+        return String.format("Encoded %.1f MiB to %.1f MiB (%.0f%%) with %s in %.2f s of CPU time",
+                input, output, 100 * output / input, this, cpuNanos / 1e9);
+    }
+
+    /**
+     * Identifies the encoding and level, files encoded differently can't be carried over from a previous run.
+     */
+    @Override
+    public String toString() {
+        return this.contentEncoding == null ? "identity" : this.contentEncoding + "-" + this.level;
+    }
+}
@@ -0,0 +1,173 @@
+package org.quiltmc;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Handler for requests to {@code v3/versions/loader/<game>/<loader>/<side>/json} when profiles are rendered on
+ * request, from the {@link ProfileIndex} published by {@link Meta}.
+ *
+ * <p>The index is read again once it is older than the refresh interval, and the most recently requested profiles
+ * are kept rendered until it changes.
+ */
+@SuppressWarnings("unused")
+public class ProfileHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
+    private static final String PREFIX = "/v3/versions/loader/";
+
+    private final StateStore bucket;
+    private final long refreshMillis;
+    private final Map<String, byte[]> cache;
+    private ProfileIndex.Renderer renderer;
+    private String indexHash;
+    private long loadedAt;
+
+    /**
+     * Reads the index from the bucket in the environment of the Lambda function.
+     */
+    public ProfileHandler() {
+        this(new S3StateStore(System.getenv("META_BUCKET"), ""),
+                Long.parseLong(System.getenv().getOrDefault("META_PROFILE_INDEX_REFRESH_SECONDS", "60")) * 1000,
+                Integer.parseInt(System.getenv().getOrDefault("META_PROFILE_CACHE_SIZE", "1024")));
+    }
+
+    /**
+     * @param bucket    where the index is read from, under {@link ProfileIndex#KEY}
+     * @param cacheSize the most rendered profiles kept
+     */
+    public ProfileHandler(StateStore bucket, long refreshMillis, int cacheSize) {
+        this.bucket = bucket;
+        this.refreshMillis = refreshMillis;
+        this.cache = new LruCache(cacheSize);
+    }
+
+    public APIGatewayProxyResponseEvent handleRequest(final APIGatewayProxyRequestEvent input, final Context context) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/json");
+
+        APIGatewayProxyResponseEvent response = new APIGatewayProxyResponseEvent()
+                .withHeaders(headers);
+
+        try {
+            byte[] profile = this.get(input.getPath());
+
+            if (profile == null) {
+                return response
+                        .withBody("{\"message\": \"Not found\"}")
+                        .withStatusCode(404);
+            }
+
+            return response
+                    .withStatusCode(200)
+                    .withBody(new String(profile, StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            e.printStackTrace();
+
+            return response
+                    .withBody(String.format("{\"message\": \"%s\"}", e.toString()))
+                    .withStatusCode(500);
+        }
+    }
+
+    /**
+     * @return the profile at a path, or null if there is no such profile
+     */
+    public synchronized byte[] get(String path) throws IOException {
+        if (path == null || !path.startsWith(PREFIX) || !path.endsWith("/json")) {
+            return null;
+        }
+
+        String[] parts = path.substring(PREFIX.length()).split("/");
+
+        if (parts.length != 4) {
+            return null;
+        }
+
+        LoaderFiles.Side side = Arrays.stream(LoaderFiles.Side.values())
+                .filter(s -> s.type.equals(parts[2]))
+                .findFirst()
+                .orElse(null);
+
+        if (side == null) {
+            return null;
+        }
+
+        this.refresh();
+
+        String key = path.substring(PREFIX.length());
+        byte[] profile = this.cache.get(key);
+
+        if (profile == null) {
+            profile = this.renderer.render(decode(parts[0]), decode(parts[1]), side);
+
+            if (profile != null) {
+                this.cache.put(key, profile);
+            }
+        }
+
+        return profile;
+    }
+
+    /**
+     * Reads the index again once the refresh interval has passed, dropping the cached profiles if it changed.
+     */
+    private void refresh() throws IOException {
+        long now = System.currentTimeMillis();
+
+        if (this.renderer != null && now - this.loadedAt < this.refreshMillis) {
+            return;
+        }
+
+        byte[] contents = this.bucket.read(ProfileIndex.KEY);
+
+        if (contents == null) {
+            throw new IOException("No profile index at " + ProfileIndex.KEY);
+        }
+
+        String hash = Hashing.md5(contents);
+
+        if (!hash.equals(this.indexHash)) {
+            this.renderer = ProfileIndex.fromBytes(contents).renderer();
+            this.indexHash = hash;
+            this.cache.clear();
+        }
+
+        this.loadedAt = now;
+    }
+
+    /**
+     * Decodes a path segment, where a plus is a plus and not a space.
+     */
+    private static String decode(String segment) throws UnsupportedEncodingException {
+        return URLDecoder.decode(segment.replace("+", "%2B"), "UTF-8");
+    }
+
+    /**
+     * Rendered profiles by path, dropping the least recently used one once there are more than the maximum.
+     */
+    private static class LruCache extends LinkedHashMap<String, byte[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        LruCache(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return this.size() > this.maxSize;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.quiltmc;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Everything needed to render the profiles under {@code v3/versions/loader}, published instead of the profiles
+ * themselves when they are rendered on request by {@link ProfileHandler}.
+ *
+ * <p>The index grows with the number of game versions plus the number of loader versions, where the profiles grow
+ * with their product.
+ */
+public class ProfileIndex {
+    public static final String KEY = "v3/profiles/index.json";
+
+    private static final Gson GSON = new Gson();
+
+    boolean compact;
+    /**
+     * The time of the run that published the index, written into every profile.
+     */
+    String time;
+    String mavenUrl;
+    String fabricUrl;
+    List<Game> games = new ArrayList<>();
+    List<Loader> loaders = new ArrayList<>();
+
+    public static ProfileIndex build(VersionTable versions, boolean compact, String time, String mavenUrl, String fabricUrl) {
+        ProfileIndex index = new ProfileIndex();
+
+        index.compact = compact;
+        index.time = time;
+        index.mavenUrl = mavenUrl;
+        index.fabricUrl = fabricUrl;
+
+        for (int game = 0; game < versions.games; ++game) {
+            index.games.add(new Game(versions.gameVersions[game], versions.hashed[game], versions.intermediary[game]));
+        }
+
+        for (int loader = 0; loader < versions.loaders; ++loader) {
+            JsonObject launcherMeta = new JsonObject();
+
+            // The rest of the launcher meta never makes it into a profile
+            launcherMeta.add("libraries", versions.launcherMeta[loader].get("libraries"));
+            launcherMeta.add("mainClass", versions.launcherMeta[loader].get("mainClass"));
+            index.loaders.add(new Loader(versions.loaderElements[loader], launcherMeta));
+        }
+
+        return index;
+    }
+
+    /**
+     * Reads an index as published, which may be gzip encoded.
+     */
+    public static ProfileIndex fromBytes(byte[] contents) throws IOException {
+        if (contents.length > 1 && (contents[0] & 0xFF) == 0x1F && (contents[1] & 0xFF) == 0x8B) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(contents))) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(contents.length * 8);
+                byte[] buffer = new byte[8192];
+                int read;
+
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+
+                contents = out.toByteArray();
+            }
+        }
+
+        return GSON.fromJson(new String(contents, StandardCharsets.UTF_8), ProfileIndex.class);
+    }
+
+    public byte[] toBytes() {
+        return GSON.toJson(this).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Prepares the fragments of every game and loader version, which are then joined into profiles.
+     */
+    public Renderer renderer() {
+        return new Renderer();
+    }
+
+    static class Game {
+        String version;
+        /**
+         * The hashed mojmap and intermediary entries, or null if the game version has none.
+         */
+        JsonObject hashed;
+        JsonObject intermediary;
+
+        Game(String version, JsonObject hashed, JsonObject intermediary) {
+            this.version = version;
+            this.hashed = hashed;
+            this.intermediary = intermediary;
+        }
+    }
+
+    static class Loader {
+        JsonObject loader;
+        JsonObject launcherMeta;
+
+        Loader(JsonObject loader, JsonObject launcherMeta) {
+            this.loader = loader;
+            this.launcherMeta = launcherMeta;
+        }
+    }
+
+    public class Renderer {
+        private final LoaderFiles files;
+        private final Map<String, LoaderFiles.Game> games = new HashMap<>();
+        private final Map<String, LoaderFiles.Loader> loaders = new HashMap<>();
+
+        Renderer() {
+            ProfileIndex index = ProfileIndex.this;
+            Gson gson = index.compact ? new Gson() : new GsonBuilder().setPrettyPrinting().create();
+
+            this.files = new LoaderFiles(gson, index.mavenUrl, index.fabricUrl, index.time);
+
+            for (Game game : index.games) {
+                if (game.hashed != null && game.intermediary != null) {
+                    this.games.putIfAbsent(game.version, this.files.game(game.version, game.hashed, game.intermediary));
+                }
+            }
+
+            for (Loader loader : index.loaders) {
+                this.loaders.putIfAbsent(loader.loader.get("version").getAsString(), this.files.loader(loader.loader, loader.launcherMeta));
+            }
+        }
+
+        /**
+         * Renders {@code v3/versions/loader/<game>/<loader>/<side>/json}.
+         *
+         * @return the profile, or null if either version isn't in the index
+         */
+        public byte[] render(String gameVersion, String loaderVersion, LoaderFiles.Side side) {
+            LoaderFiles.Game game = this.games.get(gameVersion);
+            LoaderFiles.Loader loader = this.loaders.get(loaderVersion);
+
+            return game == null || loader == null ? null : this.files.profile(game, loader, side);
+        }
+    }
+}
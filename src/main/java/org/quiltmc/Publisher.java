@@ -0,0 +1,356 @@
+package org.quiltmc;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Uploads generated files to the {@link ObjectStore} while they are still being generated.
+ *
+ * <p>At most a fixed number of uploads are in flight at once, and publishing blocks until one of them completes, so
+ * generation is held back once the store falls behind instead of the whole output tree piling up in memory. Files
+ * whose hash matches what is already in the store are never uploaded at all.
+ *
+ * <p>Index files, which list the versions that other files are published for, are held back until everything else
+ * is in the store, so readers never follow an index to a file that isn't there yet. Files no longer published are
+ * only deleted after that, once nothing refers to them.
+ */
+public class Publisher {
+    private static final int DELETE_BATCH_SIZE = 1000;
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long BASE_DELAY_MILLIS = 100;
+    private static final long MAX_DELAY_MILLIS = 10_000;
+    private static final ScheduledExecutorService RETRY_SCHEDULER = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("publisher-retry"));
+
+    private final ObjectStore store;
+    private final OutputEncoding encoding;
+    private final Map<String, String> remoteHashes;
+    private final Map<String, String> files;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final long start = System.nanoTime();
+    private final AtomicInteger uploaded = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger retries = new AtomicInteger();
+    private final AtomicLong uploadedBytes = new AtomicLong();
+    private final Queue<Upload> indexes = new ConcurrentLinkedQueue<>();
+    private int deleted;
+    private volatile Throwable failure;
+
+    /**
+     * @param remoteHashes the hashes of the files currently in the store
+     * @param files        receives the hash of every published file
+     */
+    public Publisher(ObjectStore store, OutputEncoding encoding, int maxInFlight, Map<String, String> remoteHashes, Map<String, String> files) {
+        this.store = store;
+        this.encoding = encoding;
+        this.remoteHashes = remoteHashes;
+        this.files = files;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Starts uploading a file and, if there is an encoding, its encoded variant, blocking while the maximum number of
+     * uploads are already in flight.
+     *
+     * <p>Hashes are taken of the contents as stored, which is what the store reports as the ETag.
+     *
+     * @return the hash of the published file
+     */
+    public String publish(String key, byte[] contents, String contentType) {
+        List<Upload> variants = this.variants(key, contents, contentType);
+
+        for (Upload upload : variants) {
+            if (this.changed(upload) && this.failure == null) {
+                this.acquire();
+                this.put(upload, 1);
+            }
+        }
+
+        return variants.get(0).hash;
+    }
+
+    /**
+     * Holds an index file, and its encoded variant, back until {@link #finish}, which uploads them after every other
+     * file.
+     *
+     * @return the hash of the published file
+     */
+    public String publishIndex(String key, byte[] contents, String contentType) {
+        List<Upload> variants = this.variants(key, contents, contentType);
+
+        for (Upload upload : variants) {
+            if (this.changed(upload)) {
+                this.indexes.add(upload);
+            }
+        }
+
+        return variants.get(0).hash;
+    }
+
+    /**
+     * @return the file as it is, followed by its encoded variant if there is an encoding
+     */
+    private List<Upload> variants(String key, byte[] contents, String contentType) {
+        Upload identity = new Upload(key, contents, contentType, null);
+
+        if (this.encoding.contentEncoding == null) {
+            return Collections.singletonList(identity);
+        }
+
+        return Arrays.asList(identity, new Upload(this.encoding.variant(key), this.encoding.encode(contents), contentType, this.encoding.contentEncoding));
+    }
+
+    /**
+     * Records the hash of a file being published.
+     *
+     * @return whether it differs from what is in the store
+     */
+    private boolean changed(Upload upload) {
+        this.files.put(upload.key, upload.hash);
+
+        if (upload.hash.equals(this.remoteHashes.get(upload.key))) {
+            this.skipped.incrementAndGet();
+            return false;
+        }
+
+        return true;
+    }
+
+    private void acquire() {
+        try {
+            this.inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void put(Upload upload, int attempt) {
+        CompletableFuture<Void> future;
+
+        try {
+            future = this.store.put(upload.key, upload.contents, upload.contentType, upload.contentEncoding, this.encoding.cacheControl);
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+
+        future.whenComplete((result, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+
+            if (cause == null) {
+                this.uploaded.incrementAndGet();
+                this.uploadedBytes.addAndGet(upload.contents.length);
+                this.inFlight.release();
+            } else if (attempt < MAX_ATTEMPTS && this.store.isRetryable(cause)) {
+                this.retries.incrementAndGet();
+                RETRY_SCHEDULER.schedule(() -> this.put(upload, attempt + 1),
+                        Backoff.delay(attempt, BASE_DELAY_MILLIS, MAX_DELAY_MILLIS), TimeUnit.MILLISECONDS);
+            } else {
+                this.failure = cause;
+                this.inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Waits for every upload to complete, uploads the index files, then deletes files that are in the store but weren't
+     * published.
+     */
+    public void finish() throws InterruptedException {
+        this.finish(true);
+    }
+
+    /**
+     * Waits for every upload to complete, then uploads the index files and waits for those.
+     *
+     * @param deleteStale whether to then delete files that are in the store but weren't published, which is left to
+     *                    the last step when only part of the files are published
+     */
+    public void finish(boolean deleteStale) throws InterruptedException {
+        this.await();
+
+        int indexes = this.indexes.size();
+
+        for (Upload upload = this.indexes.poll(); upload != null && this.failure == null; upload = this.indexes.poll()) {
+            this.acquire();
+            this.put(upload, 1);
+        }
+
+        this.await();
+
+        double seconds = (System.nanoTime() - this.start) / 1e9;
+        double megabytes = this.uploadedBytes.get() / (1024.0 * 1024.0);
+
+        System.out.printf("Uploaded %d files (%d indexes, %.1f MiB, %.1f files/s, %.2f MiB/s) with %d retries, skipped %d unchanged files%n",
+                this.uploaded.get(), indexes, megabytes, this.uploaded.get() / seconds, megabytes / seconds,
+                this.retries.get(), this.skipped.get()
+        );
+
+        String encoding = this.encoding.report();
+
+        if (encoding != null) {
+            System.out.println(encoding);
+        }
+
+        if (deleteStale) {
+            this.deleteStale();
+        }
+    }
+
+    /**
+     * Waits for every upload but those of the index files to complete, for steps that leave the index files to a later
+     * step through {@link #takeIndexes}.
+     */
+    public void await() throws InterruptedException {
+        this.inFlight.acquire(this.maxInFlight);
+        this.inFlight.release(this.maxInFlight);
+
+        if (this.failure != null) {
+            throw new RuntimeException("Failed to upload files", this.failure);
+        }
+    }
+
+    /**
+     * Takes the index files held back so far, which are then up to the caller to publish.
+     */
+    public List<Upload> takeIndexes() {
+        List<Upload> indexes = new ArrayList<>();
+
+        for (Upload upload = this.indexes.poll(); upload != null; upload = this.indexes.poll()) {
+            indexes.add(upload);
+        }
+
+        return indexes;
+    }
+
+    /**
+     * Holds back an index file taken from the publisher of an earlier step, already encoded and recorded there.
+     */
+    public void holdIndex(Upload upload) {
+        this.indexes.add(upload);
+    }
+
+    /**
+     * Adds the uploads of the run to its metrics.
+     */
+    public void report(Metrics metrics) {
+        metrics.count("upload.files", this.uploaded.get());
+        metrics.bytes("upload.bytes", this.uploadedBytes.get());
+        metrics.count("upload.unchanged", this.skipped.get());
+        metrics.count("upload.retries", this.retries.get());
+        metrics.count("upload.deleted", this.deleted);
+    }
+
+    /**
+     * Stops publishing after a failed run, uploads already in flight still complete.
+     */
+    public void abort() {
+        if (this.failure == null) {
+            this.failure = new CancellationException();
+        }
+    }
+
+    /**
+     * Deletes the files under {@code v3/} that are in the store but weren't published, going through a listing of the
+     * store page by page rather than the hashes the run started from, so files left behind by earlier failed runs
+     * are deleted too. Only the stale keys are held in memory.
+     *
+     * @return how many files were deleted
+     */
+    public int deleteStale() {
+        return this.deleteStale(1);
+    }
+
+    /**
+     * Deletes stale files like {@link #deleteStale()}, unless more than the given fraction of the listed files are stale.
+     *
+     * @throws IllegalStateException if too many files are stale, in which case none are deleted
+     */
+    public int deleteStale(double maxFraction) {
+        List<String> stale = new ArrayList<>();
+        int[] listed = new int[1];
+
+        this.store.list("v3/", (key, etag) -> {
+            listed[0]++;
+
+            if (!this.files.containsKey(key)) {
+                stale.add(key);
+            }
+        });
+
+        if (stale.size() > listed[0] * maxFraction) {
+            throw new IllegalStateException(String.format("Refusing to delete %d of %d files, more than %s of them",
+                    stale.size(), listed[0], maxFraction));
+        }
+
+        for (int i = 0; i < stale.size(); i += DELETE_BATCH_SIZE) {
+            this.store.delete(stale.subList(i, Math.min(i + DELETE_BATCH_SIZE, stale.size())));
+        }
+
+        this.deleted += stale.size();
+
+        System.out.printf("Deleted %d of %d files in %d requests%n", stale.size(), listed[0],
+                (stale.size() + DELETE_BATCH_SIZE - 1) / DELETE_BATCH_SIZE);
+
+        return stale.size();
+    }
+
+    /**
+     * Gets the hashes of the files currently in the store, either from the previous manifest or from the object ETags.
+     */
+    public static Map<String, String> getRemoteHashes(Diff diff, ObjectStore store, RunManifest previousManifest) {
+        switch (diff) {
+            case MANIFEST:
+                return previousManifest == null ? Collections.emptyMap() : previousManifest.files;
+            case ETAG:
+                return store.list("v3/");
+            default:
+                return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * A file waiting to be uploaded, as it is stored.
+     */
+    public static class Upload {
+        public final String key;
+        public final byte[] contents;
+        public final String contentType;
+        /**
+         * The {@code Content-Encoding} of the contents, or null if they aren't encoded.
+         */
+        public final String contentEncoding;
+        public final String hash;
+
+        public Upload(String key, byte[] contents, String contentType, String contentEncoding) {
+            this.key = key;
+            this.contents = contents;
+            this.contentType = contentType;
+            this.contentEncoding = contentEncoding;
+            this.hash = Hashing.md5(contents);
+        }
+    }
+
+    public enum Diff {
+        /**
+         * Compare against the hashes recorded in the previous run's manifest.
+         */
+        MANIFEST,
+        /**
+         * Compare against the ETags of a listing of the bucket, for when the manifest can't be trusted.
+         */
+        ETAG,
+        /**
+         * Upload everything.
+         */
+        NONE;
+
+        public static Diff fromString(String value) {
+            return value == null ? MANIFEST : valueOf(value.toUpperCase(Locale.ROOT));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.quiltmc;
+
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Inputs and outputs of a run, kept in the {@link StateStore} so the next run can tell which files need to be rebuilt.
+ */
+public class RunManifest {
+    public static final String KEY = "manifest.json";
+
+    /**
+     * Bumped whenever the generated output changes shape, so that old manifests force a full rebuild.
+     */
+    static final int FORMAT = 1;
+
+    private static final Gson GSON = new Gson();
+
+    int format = FORMAT;
+    boolean compact;
+    String encoding;
+    boolean lazyProfiles;
+    Map<String, String> games = new LinkedHashMap<>();
+    Map<String, String> loaders = new LinkedHashMap<>();
+    Map<String, String> files = new ConcurrentSkipListMap<>();
+    /**
+     * The time written into the profiles of each {@code <game>/<loader>} pair, kept until the pair changes.
+     */
+    Map<String, String> profileTimes = new LinkedHashMap<>();
+
+    public static RunManifest fromJson(String json) {
+        RunManifest manifest = GSON.fromJson(json, RunManifest.class);
+
+        return manifest != null && manifest.format == FORMAT ? manifest : null;
+    }
+
+    public String toJson() {
+        return GSON.toJson(this);
+    }
+
+    /**
+     * Compares everything recorded, including the order of the loaders which decides the order of generated lists.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof RunManifest)) {
+            return false;
+        }
+
+        RunManifest manifest = (RunManifest) o;
+
+        return this.format == manifest.format
+                && this.compact == manifest.compact
+                && Objects.equals(this.encoding, manifest.encoding)
+                && this.lazyProfiles == manifest.lazyProfiles
+                && this.games.equals(manifest.games)
+                && new ArrayList<>(this.loaders.entrySet()).equals(new ArrayList<>(manifest.loaders.entrySet()))
+                && this.files.equals(manifest.files)
+                && this.profileTimes.equals(manifest.profileTimes);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.files.hashCode();
+    }
+}
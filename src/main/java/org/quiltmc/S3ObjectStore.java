@@ -0,0 +1,96 @@
+package org.quiltmc;
+
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * An {@link ObjectStore} backed by an S3 bucket.
+ *
+ * <p>The underlying async client is shared by every store in the container and lives as long as it does, so warm
+ * invocations reuse its connection pool. It doesn't retry on its own, {@link Publisher} retries with jittered backoff.
+ */
+public class S3ObjectStore implements ObjectStore {
+    private static final Map<Integer, S3AsyncClient> CLIENTS = new ConcurrentHashMap<>();
+
+    private final S3AsyncClient s3;
+    private final String bucket;
+
+    public S3ObjectStore(String bucket, int maxConcurrency) {
+        this.s3 = CLIENTS.computeIfAbsent(maxConcurrency, S3ObjectStore::createClient);
+        this.bucket = bucket;
+    }
+
+    private static S3AsyncClient createClient(int maxConcurrency) {
+        return S3AsyncClient.builder()
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(maxConcurrency))
+                .overrideConfiguration(ClientOverrideConfiguration.builder()
+                        .retryPolicy(RetryPolicy.none())
+                        .build())
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<Void> put(String key, byte[] contents, String contentType, String contentEncoding, String cacheControl) {
+        return this.s3.putObject(PutObjectRequest.builder()
+                .bucket(this.bucket)
+                .key(key)
+                .contentType(contentType)
+                .contentEncoding(contentEncoding)
+                .cacheControl(cacheControl)
+                .contentLength((long) contents.length)
+                .build(), AsyncRequestBody.fromBytes(contents)
+        ).thenApply(response -> null);
+    }
+
+    @Override
+    public void list(String prefix, BiConsumer<String, String> objects) {
+        this.s3.listObjectsV2Paginator(ListObjectsV2Request.builder()
+                .bucket(this.bucket)
+                .prefix(prefix)
+                .build()
+        ).contents().subscribe(object -> objects.accept(object.key(), object.eTag().replace("\"", ""))).join();
+    }
+
+    @Override
+    public void delete(List<String> keys) {
+        DeleteObjectsResponse response = this.s3.deleteObjects(DeleteObjectsRequest.builder()
+                .bucket(this.bucket)
+                .delete(Delete.builder()
+                        .objects(keys.stream().map(key -> ObjectIdentifier.builder().key(key).build()).collect(Collectors.toList()))
+                        .quiet(true)
+                        .build())
+                .build()
+        ).join();
+
+        // Quiet mode only reports the keys that failed
+        for (S3Error error : response.errors()) {
+            System.out.printf("Failed to delete %s: %s%n", error.key(), error.message());
+        }
+    }
+
+    @Override
+    public boolean isRetryable(Throwable error) {
+        if (error instanceof SdkServiceException) {
+            SdkServiceException exception = (SdkServiceException) error;
+
+            // 503 SlowDown is how S3 throttles writes to a prefix
+            return exception.isThrottlingException() || exception.statusCode() >= 500;
+        }
+
+        return error instanceof SdkClientException;
+    }
+}
@@ -0,0 +1,58 @@
+package org.quiltmc;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+/**
+ * A {@link StateStore} under a prefix of an S3 bucket.
+ */
+public class S3StateStore implements StateStore {
+    private final S3Client s3;
+    private final String bucket;
+    private final String prefix;
+
+    /**
+     * Uses a client shared by every store in the container, so warm invocations reuse its connection pool.
+     */
+    public S3StateStore(String bucket, String prefix) {
+        this(Client.S3, bucket, prefix);
+    }
+
+    public S3StateStore(S3Client s3, String bucket, String prefix) {
+        this.s3 = s3;
+        this.bucket = bucket;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public byte[] read(String key) {
+        try {
+            return this.s3.getObjectAsBytes(GetObjectRequest.builder()
+                    .bucket(this.bucket)
+                    .key(this.prefix + key)
+                    .build()
+            ).asByteArray();
+        } catch (NoSuchKeyException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void write(String key, byte[] contents) {
+        this.s3.putObject(PutObjectRequest.builder()
+                .bucket(this.bucket)
+                .key(this.prefix + key)
+                .contentLength((long) contents.length)
+                .build(), RequestBody.fromBytes(contents));
+    }
+
+    /**
+     * Holds the shared client, created the first time a store uses it.
+     */
+    private static class Client {
+        static final S3Client S3 = S3Client.create();
+    }
+}
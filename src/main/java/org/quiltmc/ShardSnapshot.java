@@ -0,0 +1,136 @@
+package org.quiltmc;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * The inputs of a sharded run, written to the {@link StateStore} by the coordinator so that every shard generates its
+ * part of {@code v3/versions/loader} from the same versions, launcher meta and timestamp.
+ *
+ * <p>Game versions are assigned to shards by the hash of their name, so a game version stays on the same shard as
+ * others are added.
+ */
+public class ShardSnapshot {
+    public static final String KEY = "shards/snapshot.json";
+
+    private static final Gson GSON = new Gson();
+
+    /**
+     * Tells the results of this run apart from those left behind by earlier ones.
+     */
+    String id = UUID.randomUUID().toString();
+    int shards;
+    /**
+     * The time written into every generated profile.
+     */
+    String time;
+    /**
+     * The outputs of the populate stages, by name.
+     */
+    Map<String, JsonArray> arrays = new LinkedHashMap<>();
+    /**
+     * The launcher meta of every loader version, by maven id.
+     */
+    Map<String, JsonElement> launcherMeta = new LinkedHashMap<>();
+    /**
+     * The stages that ran, written once the whole run has succeeded.
+     */
+    Map<String, StageRecord> stages = new LinkedHashMap<>();
+    /**
+     * The hashes of the files published by the coordinator.
+     */
+    Map<String, String> files = new TreeMap<>();
+    /**
+     * The index files held back by the coordinator, which only the finish step uploads.
+     */
+    Map<String, Index> indexes = new TreeMap<>();
+
+    ShardSnapshot(int shards, String time) {
+        this.shards = shards;
+        this.time = time;
+    }
+
+    public static int shardOf(String gameVersion, int shards) {
+        return Math.floorMod(gameVersion.hashCode(), shards);
+    }
+
+    public static ShardSnapshot fromJson(String json) {
+        return GSON.fromJson(json, ShardSnapshot.class);
+    }
+
+    public String toJson() {
+        return GSON.toJson(this);
+    }
+
+    static Map<String, Index> indexes(List<Publisher.Upload> uploads) {
+        Map<String, Index> indexes = new TreeMap<>();
+
+        for (Publisher.Upload upload : uploads) {
+            indexes.put(upload.key, new Index(upload.contentType, upload.contentEncoding, Base64.getEncoder().encodeToString(upload.contents)));
+        }
+
+        return indexes;
+    }
+
+    static List<Publisher.Upload> uploads(Map<String, Index> indexes) {
+        List<Publisher.Upload> uploads = new ArrayList<>();
+
+        indexes.forEach((key, index) -> uploads.add(new Publisher.Upload(key, Base64.getDecoder().decode(index.contents), index.contentType, index.contentEncoding)));
+
+        return uploads;
+    }
+
+    /**
+     * An index file as it is stored, its contents in base64.
+     */
+    static class Index {
+        String contentType;
+        String contentEncoding;
+        String contents;
+
+        Index(String contentType, String contentEncoding, String contents) {
+            this.contentType = contentType;
+            this.contentEncoding = contentEncoding;
+            this.contents = contents;
+        }
+    }
+
+    /**
+     * The files published by one shard.
+     */
+    public static class Result {
+        String snapshot;
+        Map<String, String> files = new TreeMap<>();
+        /**
+         * The index files held back by the shard, which only the finish step uploads.
+         */
+        Map<String, Index> indexes = new TreeMap<>();
+
+        Result(String snapshot, Map<String, String> files, List<Publisher.Upload> indexes) {
+            this.snapshot = snapshot;
+            this.files.putAll(files);
+            this.indexes.putAll(ShardSnapshot.indexes(indexes));
+        }
+
+        public static String key(int shard) {
+            return "shards/" + shard + ".json";
+        }
+
+        public static Result fromJson(String json) {
+            return GSON.fromJson(json, Result.class);
+        }
+
+        public String toJson() {
+            return GSON.toJson(this);
+        }
+    }
+}
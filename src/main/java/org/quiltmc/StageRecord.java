@@ -0,0 +1,45 @@
+package org.quiltmc;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The inputs and outputs of a populate stage, kept in the {@link StateStore} so the next run can skip the stage and
+ * reuse its outputs when none of its inputs changed.
+ */
+public class StageRecord {
+    private static final Gson GSON = new Gson();
+
+    /**
+     * A fingerprint of everything the stage read, such as the maven metadata of the artifacts it lists.
+     */
+    String inputs;
+    /**
+     * The JSON the stage produced for later stages, by name.
+     */
+    Map<String, JsonElement> outputs = new LinkedHashMap<>();
+    /**
+     * The hashes of the files the stage published.
+     */
+    Map<String, String> files = new TreeMap<>();
+
+    StageRecord(String inputs) {
+        this.inputs = inputs;
+    }
+
+    public static String key(String stage) {
+        return "stages/" + stage + ".json";
+    }
+
+    public static StageRecord fromJson(String json) {
+        return GSON.fromJson(json, StageRecord.class);
+    }
+
+    public String toJson() {
+        return GSON.toJson(this);
+    }
+}
@@ -0,0 +1,25 @@
+package org.quiltmc;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Storage for data that is carried over between runs, such as the run manifest and the HTTP cache.
+ */
+public interface StateStore {
+    /**
+     * @return the contents stored under the key, or null if there are none
+     */
+    byte[] read(String key) throws IOException;
+
+    void write(String key, byte[] contents) throws IOException;
+
+    /**
+     * Stores state on local disk if {@code META_STATE_DIR} is set, otherwise under {@code .meta/} in the bucket.
+     */
+    static StateStore fromConfig(Config config) {
+        return config.stateDir != null
+                ? new LocalStateStore(Paths.get(config.stateDir))
+                : new S3StateStore(config.bucket, ".meta/");
+    }
+}
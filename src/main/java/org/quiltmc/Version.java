@@ -0,0 +1,141 @@
+package org.quiltmc;
+
+import java.util.Objects;
+
+/**
+ * A version string split once into its parts, such as {@code 0.17.0+build.3} or the older {@code 1.18.2.5}.
+ *
+ * <p>Versions order by their release numbers, then pre-release versions before releases, then by build number.
+ */
+public final class Version implements Comparable<Version> {
+    private static final String BUILD = "+build.";
+
+    public final String version;
+    /**
+     * The version without a {@code +build.N} suffix, or the whole version if it has none.
+     */
+    public final String base;
+    /**
+     * The version without its build number, which is the last part after {@code +build.}, {@code -} or {@code .}.
+     */
+    public final String withoutBuild;
+    /**
+     * What precedes the build number: {@code +build.} or {@code .}.
+     */
+    public final String separator;
+    /**
+     * The number after the last {@code .}, or null if that isn't a number.
+     */
+    public final Integer build;
+    private final String[] release;
+    private final String[] preRelease;
+
+    private Version(String version) {
+        int plus = version.lastIndexOf('+');
+        boolean hasBuild = version.contains(BUILD);
+
+        this.version = version;
+        this.base = hasBuild ? version.substring(0, plus) : version;
+        this.separator = hasBuild ? BUILD : ".";
+
+        int legacySeparator = version.lastIndexOf(version.indexOf('-') >= 0 ? '-' : '.');
+
+        this.withoutBuild = hasBuild ? this.base : legacySeparator >= 0 ? version.substring(0, legacySeparator) : version;
+        this.build = parseBuild(version.substring(version.lastIndexOf('.') + 1));
+
+        int dash = this.base.indexOf('-');
+
+        this.release = (dash >= 0 ? this.base.substring(0, dash) : this.base).split("\\.");
+        this.preRelease = dash >= 0 ? this.base.substring(dash + 1).split("\\.") : null;
+    }
+
+    public static Version parse(String version) {
+        return new Version(version);
+    }
+
+    /**
+     * @return the number a string of digits stands for, or null if it isn't one or is out of range
+     */
+    private static Integer parseBuild(String build) {
+        if (build.isEmpty() || build.length() > 10) {
+            return null;
+        }
+
+        long value = 0;
+
+        for (int i = 0; i < build.length(); ++i) {
+            char c = build.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return null;
+            }
+
+            value = value * 10 + (c - '0');
+        }
+
+        return value <= Integer.MAX_VALUE ? (int) value : null;
+    }
+
+    @Override
+    public int compareTo(Version other) {
+        int compare = compareParts(this.release, other.release);
+
+        if (compare == 0) {
+            if (this.preRelease == null || other.preRelease == null) {
+                compare = Boolean.compare(this.preRelease == null, other.preRelease == null);
+            } else {
+                compare = compareParts(this.preRelease, other.preRelease);
+            }
+        }
+
+        if (compare == 0) {
+            compare = Boolean.compare(this.separator.equals(BUILD), other.separator.equals(BUILD));
+        }
+
+        if (compare == 0 && this.build != null && other.build != null) {
+            compare = Integer.compare(this.build, other.build);
+        }
+
+        return compare != 0 ? compare : this.version.compareTo(other.version);
+    }
+
+    /**
+     * Compares dot separated parts, numbers numerically and below anything else, as semantic versioning does.
+     */
+    private static int compareParts(String[] a, String[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); ++i) {
+            Integer x = parseBuild(a[i]);
+            Integer y = parseBuild(b[i]);
+            int compare;
+
+            if (x != null && y != null) {
+                compare = Integer.compare(x, y);
+            } else if (x != null || y != null) {
+                compare = x != null ? -1 : 1;
+            } else {
+                compare = a[i].compareTo(b[i]);
+            }
+
+            if (compare != 0) {
+                return compare;
+            }
+        }
+
+        return Integer.compare(a.length, b.length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Version && this.version.equals(((Version) o).version);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(this.version);
+    }
+
+    @Override
+    public String toString() {
+        return this.version;
+    }
+}
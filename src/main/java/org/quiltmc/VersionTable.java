@@ -0,0 +1,68 @@
+package org.quiltmc;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.Map;
+
+/**
+ * The game and loader versions of a run, joined once with their hashed, intermediary and launcher meta entries.
+ *
+ * <p>Every version gets a dense integer id in list order, so generation indexes arrays instead of looking versions up
+ * by string or walking JSON trees for each game and loader pair.
+ */
+public class VersionTable {
+    final int games;
+    final String[] gameVersions;
+    final JsonObject[] gameElements;
+    /**
+     * The hashed mojmap and intermediary entries of each game version, or null where there are none.
+     */
+    final JsonObject[] hashed;
+    final JsonObject[] intermediary;
+    final int loaders;
+    final String[] loaderVersions;
+    final String[] loaderMavens;
+    final JsonObject[] loaderElements;
+    final JsonObject[] launcherMeta;
+
+    private VersionTable(int games, int loaders) {
+        this.games = games;
+        this.gameVersions = new String[games];
+        this.gameElements = new JsonObject[games];
+        this.hashed = new JsonObject[games];
+        this.intermediary = new JsonObject[games];
+        this.loaders = loaders;
+        this.loaderVersions = new String[loaders];
+        this.loaderMavens = new String[loaders];
+        this.loaderElements = new JsonObject[loaders];
+        this.launcherMeta = new JsonObject[loaders];
+    }
+
+    public static VersionTable build(JsonArray games, JsonArray loaders, Map<String, JsonObject> hashed,
+                                     Map<String, JsonObject> intermediaries, LauncherMetaCache launcherMeta) {
+        VersionTable table = new VersionTable(games.size(), loaders.size());
+
+        for (int i = 0; i < table.games; ++i) {
+            JsonObject game = games.get(i).getAsJsonObject();
+            String version = game.get("version").getAsString();
+
+            table.gameVersions[i] = version;
+            table.gameElements[i] = game;
+            table.hashed[i] = hashed.get(version);
+            table.intermediary[i] = intermediaries.get(version);
+        }
+
+        for (int i = 0; i < table.loaders; ++i) {
+            JsonObject loader = loaders.get(i).getAsJsonObject();
+            String maven = loader.get("maven").getAsString();
+
+            table.loaderVersions[i] = loader.get("version").getAsString();
+            table.loaderMavens[i] = maven;
+            table.loaderElements[i] = loader;
+            table.launcherMeta[i] = launcherMeta.get(maven).getAsJsonObject();
+        }
+
+        return table;
+    }
+}
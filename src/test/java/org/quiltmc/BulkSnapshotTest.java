@@ -0,0 +1,94 @@
+package org.quiltmc;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BulkSnapshotTest {
+  private static JsonArray array(String json) {
+    return JsonParser.parseString(json).getAsJsonArray();
+  }
+
+  private static BulkSnapshot snapshot(String games, String loaders) {
+    Map<String, JsonArray> arrays = new HashMap<>();
+    LauncherMetaCache launcherMeta = new LauncherMetaCache(null);
+
+    arrays.put("game", array(games));
+    arrays.put("loader", array(loaders));
+
+    for (int i = 0; i < arrays.get("loader").size(); ++i) {
+      JsonObject meta = new JsonObject();
+      meta.addProperty("version", 1);
+      meta.addProperty("weight", 0.5);
+      launcherMeta.put(arrays.get("loader").get(i).getAsJsonObject().get("maven").getAsString(), meta);
+    }
+
+    return BulkSnapshot.build(arrays, launcherMeta);
+  }
+
+  @Test
+  public void binaryEncodingRoundTrips() throws IOException {
+    BulkSnapshot snapshot = snapshot("[{\"version\": \"1.19\", \"stable\": true}, {\"version\": \"22w11a\", \"stable\": false}]",
+        "[{\"version\": \"0.17.0\", \"maven\": \"org.quiltmc:quilt-loader:0.17.0\", \"build\": -3}]");
+
+    BulkSnapshot decoded = BulkSnapshot.fromBinary(snapshot.toBinary());
+
+    assertEquals(4, snapshot.records.size());
+    assertEquals(snapshot.hash, decoded.hash);
+    assertArrayEquals(snapshot.ndjson, BulkSnapshot.fromNdjson(snapshot.ndjson).ndjson);
+  }
+
+  @Test
+  public void deltaTurnsPreviousSnapshotIntoCurrent() throws IOException {
+    BulkSnapshot previous = snapshot("[{\"version\": \"1.19\", \"stable\": false}, {\"version\": \"1.18\", \"stable\": true}]",
+        "[{\"version\": \"0.17.0\", \"maven\": \"org.quiltmc:quilt-loader:0.17.0\"}]");
+    BulkSnapshot current = snapshot("[{\"version\": \"1.19.1\", \"stable\": true}, {\"version\": \"1.19\", \"stable\": true}, {\"version\": \"1.18\", \"stable\": true}]",
+        "[{\"version\": \"0.17.1\", \"maven\": \"org.quiltmc:quilt-loader:0.17.1\"}]");
+
+    byte[] delta = current.delta(previous);
+
+    assertEquals(current.hash, previous.apply(delta).hash);
+
+    try {
+      current.apply(delta);
+      fail("Applied a delta to the wrong snapshot");
+    } catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void historyRejectsRecordsItWasNotWrittenWith() throws IOException {
+    Map<String, byte[]> files = new HashMap<>();
+    StateStore state = new StateStore() {
+      @Override
+      public byte[] read(String key) {
+        return files.get(key);
+      }
+
+      @Override
+      public void write(String key, byte[] contents) {
+        files.put(key, contents);
+      }
+    };
+
+    BulkSnapshot first = snapshot("[{\"version\": \"1.18\"}]", "[]");
+    BulkSnapshot second = snapshot("[{\"version\": \"1.19\"}, {\"version\": \"1.18\"}]", "[]");
+    BulkSnapshot.History history = BulkSnapshot.History.read(state);
+    history.advance(null, first.hash);
+    history.write(state, first);
+
+    assertEquals(first.hash, BulkSnapshot.History.read(state).readPrevious(state).hash);
+
+    // A run that wrote its records but failed before writing the history
+    state.write(BulkSnapshot.RECORDS_KEY, second.ndjson);
+
+    assertNull(BulkSnapshot.History.read(state).readPrevious(state));
+  }
+}
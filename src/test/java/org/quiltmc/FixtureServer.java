@@ -0,0 +1,80 @@
+package org.quiltmc;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves fixture files over HTTP on the loopback interface, standing in for the maven repositories and Mojang.
+ *
+ * <p>Every response is delayed by the given latency, and the first request for each path can be made to fail with 503
+ * so retries are exercised the same way on every run. Files are served with an ETag and answer conditional requests
+ * with 304.
+ */
+public class FixtureServer implements AutoCloseable {
+  public final Map<String, byte[]> files = new ConcurrentHashMap<>();
+  public final AtomicInteger requests = new AtomicInteger();
+  public final AtomicInteger failures = new AtomicInteger();
+  private final Set<String> requested = ConcurrentHashMap.newKeySet();
+  private final ExecutorService executor = Executors.newCachedThreadPool(new NamedThreadFactory("fixture-server"));
+  private final HttpServer server;
+
+  public FixtureServer(long latencyMillis, boolean failFirstRequests) throws IOException {
+    this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    this.server.setExecutor(this.executor);
+    this.server.createContext("/", exchange -> {
+      this.requests.incrementAndGet();
+
+      try {
+        Thread.sleep(latencyMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+
+      String path = exchange.getRequestURI().getPath();
+      byte[] body = this.files.get(path);
+
+      if (failFirstRequests && this.requested.add(path)) {
+        this.failures.incrementAndGet();
+        exchange.sendResponseHeaders(503, -1);
+      } else if (body == null) {
+        exchange.sendResponseHeaders(404, -1);
+      } else {
+        String etag = "\"" + Hashing.md5(body) + "\"";
+
+        exchange.getResponseHeaders().add("ETag", etag);
+
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+          exchange.sendResponseHeaders(304, -1);
+        } else {
+          exchange.sendResponseHeaders(200, body.length);
+
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+        }
+      }
+
+      exchange.close();
+    });
+    this.server.start();
+  }
+
+  public String url(String path) {
+    return "http://127.0.0.1:" + this.server.getAddress().getPort() + path;
+  }
+
+  @Override
+  public void close() {
+    this.server.stop(0);
+    this.executor.shutdown();
+  }
+}
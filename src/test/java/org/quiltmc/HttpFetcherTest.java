@@ -0,0 +1,96 @@
+package org.quiltmc;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class HttpFetcherTest {
+  @Test
+  public void retriesServerErrorsAndRevalidates() throws IOException {
+    byte[] body = "{\"version\": \"0.17.0\"}".getBytes(StandardCharsets.UTF_8);
+    AtomicInteger requests = new AtomicInteger();
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+
+    server.createContext("/loader.json", exchange -> {
+      int request = requests.incrementAndGet();
+
+      if (request == 1) {
+        exchange.sendResponseHeaders(503, -1);
+      } else if ("\"abc\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        exchange.sendResponseHeaders(304, -1);
+      } else {
+        exchange.getResponseHeaders().add("ETag", "\"abc\"");
+        exchange.sendResponseHeaders(200, body.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(body);
+        }
+      }
+
+      exchange.close();
+    });
+    server.start();
+
+    try {
+      String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/loader.json";
+      HttpFetcher fetcher = new HttpFetcher(new LocalStateStore(Files.createTempDirectory("state")), false, 2, 1);
+      fetcher.load();
+
+      assertArrayEquals(body, fetcher.get(url));
+      assertArrayEquals(body, fetcher.getAsync(url).join());
+      assertEquals(3, requests.get());
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void replacesChangedBodies() throws IOException {
+    AtomicInteger version = new AtomicInteger();
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+
+    server.createContext("/", exchange -> {
+      byte[] body = ("{\"version\": " + version.get() + "}").getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("ETag", "\"" + version.get() + "\"");
+      exchange.sendResponseHeaders(200, body.length);
+
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+
+      exchange.close();
+    });
+    server.start();
+
+    try {
+      String url = "http://127.0.0.1:" + server.getAddress().getPort();
+      Path state = Files.createTempDirectory("state");
+      HttpFetcher fetcher = new HttpFetcher(new LocalStateStore(state), false, 2, 1);
+      fetcher.load();
+
+      fetcher.get(url + "/manifest.json");
+      version.incrementAndGet();
+      assertEquals("{\"version\": 1}", new String(fetcher.get(url + "/manifest.json"), StandardCharsets.UTF_8));
+
+      // Launcher meta is cached by the caller, so it isn't stored here
+      fetcher.getAsyncUncached(url + "/loader.json").join();
+      fetcher.save();
+
+      try (Stream<Path> bodies = Files.list(state.resolve("http"))) {
+        assertEquals(1, bodies.filter(path -> !path.endsWith("index.json")).count());
+      }
+    } finally {
+      server.stop(0);
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package org.quiltmc;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * An {@link ObjectStore} that keeps objects in memory, standing in for S3 in tests.
+ */
+public class InMemoryObjectStore implements ObjectStore {
+  public final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+  public final Map<String, String> contentTypes = new ConcurrentHashMap<>();
+  public final Map<String, String> contentEncodings = new ConcurrentHashMap<>();
+  public final AtomicInteger puts = new AtomicInteger();
+  public final AtomicInteger deletes = new AtomicInteger();
+  private final AtomicInteger throttled = new AtomicInteger();
+
+  /**
+   * Makes the next puts fail as if S3 answered 503 SlowDown.
+   */
+  public void throttle(int puts) {
+    this.throttled.set(puts);
+  }
+
+  @Override
+  public CompletableFuture<Void> put(String key, byte[] contents, String contentType, String contentEncoding, String cacheControl) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+
+    if (this.throttled.getAndDecrement() > 0) {
+      future.completeExceptionally(new SlowDownException());
+    } else {
+      this.puts.incrementAndGet();
+      this.objects.put(key, contents.clone());
+      this.contentTypes.put(key, contentType);
+
+      if (contentEncoding != null) {
+        this.contentEncodings.put(key, contentEncoding);
+      }
+      future.complete(null);
+    }
+
+    return future;
+  }
+
+  @Override
+  public void list(String prefix, BiConsumer<String, String> objects) {
+    this.objects.forEach((key, contents) -> {
+      if (key.startsWith(prefix)) {
+        objects.accept(key, Hashing.md5(contents));
+      }
+    });
+  }
+
+  @Override
+  public void delete(List<String> keys) {
+    if (keys.size() > 1000) {
+      throw new IllegalArgumentException("Too many keys: " + keys.size());
+    }
+
+    for (String key : keys) {
+      if (this.objects.remove(key) != null) {
+        this.deletes.incrementAndGet();
+      }
+    }
+  }
+
+  @Override
+  public boolean isRetryable(Throwable error) {
+    return error instanceof SlowDownException;
+  }
+
+  private static class SlowDownException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+  }
+}
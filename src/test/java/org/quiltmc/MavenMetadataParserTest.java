@@ -0,0 +1,42 @@
+package org.quiltmc;
+
+import org.junit.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class MavenMetadataParserTest {
+  private static final String METADATA = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<metadata>\n"
+      + "  <groupId>org.quiltmc</groupId>\n"
+      + "  <artifactId>quilt-loader</artifactId>\n"
+      + "  <versioning>\n"
+      + "    <latest>0.17.1</latest>\n"
+      + "    <release>0.17.0</release>\n"
+      + "    <versions>\n"
+      + "      <version>0.16.0</version>\n"
+      + "      <version>0.16.1</version>\n"
+      + "      <version>0.16.0</version>\n"
+      + "      <version>0.17.0</version>\n"
+      + "      <version>0.17.1</version>\n"
+      + "    </versions>\n"
+      + "    <lastUpdated>20221017120000</lastUpdated>\n"
+      + "  </versioning>\n"
+      + "</metadata>\n";
+
+  @Test
+  public void readsVersionsNewestFirst() throws XMLStreamException {
+    MavenMetadataParser.Metadata metadata = MavenMetadataParser.parse(METADATA.getBytes(StandardCharsets.UTF_8));
+
+    assertEquals(4, metadata.size());
+    assertEquals("0.17.1", metadata.get(0));
+    assertEquals("0.16.0", metadata.get(3));
+    assertEquals(1, metadata.indexOf("0.17.0"));
+    assertEquals(-1, metadata.indexOf("0.15.0"));
+    assertEquals("0.17.1", metadata.latest);
+    assertEquals("0.17.0", metadata.release);
+    assertEquals("20221017120000", metadata.lastUpdated);
+  }
+}
@@ -1,15 +1,223 @@
 package org.quiltmc;
 
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
 public class MetaTest {
   @Test
-  public void successfulResponse() {
-//    Meta meta = new Meta();
-//    APIGatewayProxyResponseEvent result = meta.handleRequest(null, null);
-//    assertEquals(result.getStatusCode().intValue(), 200);
-//    assertEquals(result.getHeaders().get("Content-Type"), "application/json");
-//    String content = result.getBody();
-//    assertNotNull(content);
+  public void successfulResponse() throws IOException {
+    try (OfflineHarness harness = new OfflineHarness(8, 5, 0, true)) {
+      Meta meta = harness.createMeta();
+      APIGatewayProxyResponseEvent result = meta.handleRequest(null, null);
+      assertEquals(result.getStatusCode().intValue(), 200);
+      assertEquals(result.getHeaders().get("Content-Type"), "application/json");
+      String content = result.getBody();
+      assertNotNull(content);
+
+      // Each game version has a list of loader versions, and a file and two profiles per loader version
+      assertTrue(harness.bucket.objects.containsKey("v3/versions/loader/1.14.0/0.14.0/profile/json"));
+      assertEquals(8 * (1 + 5 * 3), harness.bucket.objects.keySet().stream().filter(key -> key.startsWith("v3/versions/loader/")).count());
+
+      // The bulk snapshot holds every game, hashed, intermediary, mappings, loader, launcher meta and installer entry
+      JsonObject latest = JsonParser.parseString(new String(harness.bucket.objects.get(BulkSnapshot.LATEST), StandardCharsets.UTF_8)).getAsJsonObject();
+      BulkSnapshot snapshot = BulkSnapshot.fromBinary(harness.bucket.objects.get(latest.get("binary").getAsString()));
+      assertEquals(latest.get("hash").getAsString(), snapshot.hash);
+      assertEquals(8 * 4 + 5 * 2 + 2, snapshot.records.size());
+      assertTrue(meta.getMetrics().get("fetch.retries") > 0);
+
+      // Nothing changed, so the second run publishes nothing
+      harness.bucket.puts.set(0);
+      result = meta.handleRequest(null, null);
+      assertEquals(result.getStatusCode().intValue(), 200);
+      assertEquals(0, harness.bucket.puts.get());
+      assertEquals(0, meta.getMetrics().get("stages.ran"), 0);
+      assertEquals(0, meta.getMetrics().get("upload.files"), 0);
+      assertEquals(0, meta.getMetrics().get("failures"), 0);
+      assertTrue(meta.getMetrics().get("fetch.notModified") > 0);
+    }
+  }
+
+  @Test
+  public void fullRunSkipsUnchangedProfiles() throws Exception {
+    try (OfflineHarness harness = new OfflineHarness(8, 5, 0, false)) {
+      harness.set("META_INCREMENTAL", "false");
+      assertEquals(200, harness.createMeta().handleRequest(null, null).getStatusCode().intValue());
+
+      String key = "v3/versions/loader/1.14.0/0.14.0/profile/json";
+      byte[] profile = harness.bucket.objects.get(key);
+
+      // Profile times have a resolution of a second
+      Thread.sleep(1100);
+
+      // Everything is generated again, but the profiles keep their time and come out the same
+      harness.bucket.puts.set(0);
+      Meta meta = harness.createMeta();
+      assertEquals(200, meta.handleRequest(null, null).getStatusCode().intValue());
+      assertEquals(0, harness.bucket.puts.get());
+      assertTrue(meta.getMetrics().get("upload.unchanged") >= 8 * 5 * 2);
+      assertArrayEquals(profile, harness.bucket.objects.get(key));
+    }
+  }
+
+  @Test
+  public void failedMetadataFetchFailsRun() throws IOException {
+    try (OfflineHarness harness = new OfflineHarness(8, 5, 0, false)) {
+      assertEquals(200, harness.createMeta().handleRequest(null, null).getStatusCode().intValue());
+
+      Map<String, byte[]> published = new HashMap<>(harness.bucket.objects);
+
+      // Without the loader versions nothing may be unpublished
+      harness.server.files.remove("/maven/org/quiltmc/quilt-loader/maven-metadata.xml");
+      Meta meta = harness.createMeta();
+      assertEquals(500, meta.handleRequest(null, null).getStatusCode().intValue());
+      assertEquals(1, meta.getMetrics().get("failures"), 0);
+      assertEquals(0, harness.bucket.deletes.get());
+      assertEquals(published.keySet(), harness.bucket.objects.keySet());
+    }
+  }
+
+  @Test
+  public void enablingLazyProfilesDeletesProfiles() throws IOException {
+    try (OfflineHarness harness = new OfflineHarness(8, 5, 0, false)) {
+      assertEquals(200, harness.createMeta().handleRequest(null, null).getStatusCode().intValue());
+
+      // Most of the bucket goes stale at once, which must not stop the profiles from being deleted
+      harness.set("META_LAZY_PROFILES", "true");
+      assertEquals(200, harness.createMeta().handleRequest(null, null).getStatusCode().intValue());
+      assertEquals(8 * 5 * 2, harness.bucket.deletes.get());
+      assertFalse(harness.bucket.objects.keySet().stream().anyMatch(key -> key.endsWith("/json")));
+      assertTrue(harness.bucket.objects.containsKey(ProfileIndex.KEY));
+    }
+  }
+
+  @Test
+  public void shardedRunMatchesSingleRun() throws IOException {
+    try (OfflineHarness harness = new OfflineHarness(12, 4, 0, true)) {
+      assertEquals(200, harness.createMeta().handleRequest(null, null).getStatusCode().intValue());
+
+      Map<String, byte[]> single = new HashMap<>(harness.bucket.objects);
+
+      // Start over from an empty bucket and no state
+      harness.bucket.objects.clear();
+      harness.set("META_STATE_DIR", Files.createTempDirectory("meta-state").toString());
+      assertEquals(200, new LocalShardRunner(harness::createMeta, 3).run().getStatusCode().intValue());
+      assertEquals(single.keySet(), harness.bucket.objects.keySet());
+
+      // Profiles hold the time of the run, everything else must match
+      for (String key : single.keySet()) {
+        if (!key.endsWith("/json")) {
+          assertArrayEquals(key, single.get(key), harness.bucket.objects.get(key));
+        }
+      }
+
+      harness.bucket.puts.set(0);
+      assertEquals(200, new LocalShardRunner(harness::createMeta, 3).run().getStatusCode().intValue());
+      assertEquals(0, harness.bucket.puts.get());
+    }
+  }
+
+  @Test
+  public void shardsLeaveIndexesToFinishStep() throws IOException {
+    try (OfflineHarness harness = new OfflineHarness(12, 4, 0, false)) {
+      assertEquals(200, harness.createMeta().handleRequest(step("coordinate", null), null).getStatusCode().intValue());
+
+      for (int shard = 0; shard < 3; ++shard) {
+        assertEquals(200, harness.createMeta().handleRequest(step("shard", shard), null).getStatusCode().intValue());
+      }
+
+      assertTrue(harness.bucket.objects.containsKey("v3/versions/loader/1.14.0/0.14.0/profile/json"));
+      assertEquals(Collections.emptyList(), harness.bucket.objects.keySet().stream().filter(Meta::isIndex).collect(Collectors.toList()));
+
+      assertEquals(200, harness.createMeta().handleRequest(step("finish", null), null).getStatusCode().intValue());
+      assertTrue(harness.bucket.objects.containsKey("v3/versions"));
+      assertTrue(harness.bucket.objects.containsKey("v3/versions/game/intermediary"));
+      assertTrue(harness.bucket.objects.containsKey("v3/versions/loader"));
+      assertTrue(harness.bucket.objects.containsKey(BulkSnapshot.LATEST));
+    }
+  }
+
+  @Test
+  public void indexesAreTopLevelLists() {
+    assertTrue(Meta.isIndex("v3/versions"));
+    assertTrue(Meta.isIndex("v3/versions/loader"));
+    assertTrue(Meta.isIndex("v3/versions/game"));
+    assertTrue(Meta.isIndex("v3/versions/game/hashed"));
+    assertTrue(Meta.isIndex(ProfileIndex.KEY));
+    assertTrue(Meta.isIndex(BulkSnapshot.LATEST));
+    assertFalse(Meta.isIndex("v3/versions/loader/1.18.2"));
+    assertFalse(Meta.isIndex("v3/versions/loader/1.18.2/0.17.0"));
+    assertFalse(Meta.isIndex("v3/versions/intermediary/1.18.2"));
+    assertFalse(Meta.isIndex("v3/versions/quilt-mappings/1.18.2"));
+    assertFalse(Meta.isIndex(BulkSnapshot.binaryKey("abc")));
+  }
+
+  private static APIGatewayProxyRequestEvent step(String step, Integer shard) {
+    Map<String, String> parameters = new HashMap<>();
+    parameters.put("step", step);
+    parameters.put("shards", "3");
+
+    if (shard != null) {
+      parameters.put("shard", String.valueOf(shard));
+    }
+
+    return new APIGatewayProxyRequestEvent().withQueryStringParameters(parameters);
+  }
+
+  @Test
+  public void lazyProfilesMatchStaticProfiles() throws IOException {
+    try (OfflineHarness harness = new OfflineHarness(6, 4, 0, false)) {
+      assertEquals(200, harness.createMeta().handleRequest(null, null).getStatusCode().intValue());
+
+      Map<String, byte[]> single = new HashMap<>(harness.bucket.objects);
+
+      harness.bucket.objects.clear();
+      harness.set("META_STATE_DIR", Files.createTempDirectory("meta-state").toString());
+      harness.set("META_LAZY_PROFILES", "true");
+      assertEquals(200, harness.createMeta().handleRequest(null, null).getStatusCode().intValue());
+      assertFalse(harness.bucket.objects.keySet().stream().anyMatch(key -> key.endsWith("/json")));
+
+      // Render with the time of the static run, profiles hold the time of the run
+      ProfileIndex index = ProfileIndex.fromBytes(harness.bucket.objects.get(ProfileIndex.KEY));
+      String profile = new String(single.get("v3/versions/loader/1.14.0/0.14.0/profile/json"), StandardCharsets.UTF_8);
+      index.time = JsonParser.parseString(profile).getAsJsonObject().get("time").getAsString();
+
+      byte[] contents = index.toBytes();
+      ProfileHandler handler = new ProfileHandler(new StateStore() {
+        @Override
+        public byte[] read(String key) {
+          return ProfileIndex.KEY.equals(key) ? contents : null;
+        }
+
+        @Override
+        public void write(String key, byte[] contents) {
+          throw new UnsupportedOperationException();
+        }
+      }, 60_000, 16);
+
+      int profiles = 0;
+
+      for (Map.Entry<String, byte[]> file : single.entrySet()) {
+        if (file.getKey().endsWith("/json")) {
+          assertArrayEquals(file.getKey(), file.getValue(), handler.get("/" + file.getKey()));
+          profiles++;
+        }
+      }
+
+      assertEquals(6 * 4 * 2, profiles);
+      assertNull(handler.get("/v3/versions/loader/1.14.0/9.9.9/profile/json"));
+    }
   }
 }
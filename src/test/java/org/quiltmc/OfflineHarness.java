@@ -0,0 +1,170 @@
+package org.quiltmc;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs the whole pipeline against synthetic repositories served from the loopback interface, a local state directory
+ * and an in-memory bucket, so it can be timed and profiled without any network.
+ *
+ * <p>Run {@code main} with the number of game versions, loader versions, latency in milliseconds, whether the first
+ * request for each file fails and number of runs, for example {@code 100 500 20 true 2}, optionally followed by a number of shards to run each run as
+ * a sharded run with {@link LocalShardRunner}. The metrics of every run are printed.
+ */
+public class OfflineHarness implements AutoCloseable {
+  public final FixtureServer server;
+  public final InMemoryObjectStore bucket = new InMemoryObjectStore();
+  public final Path stateDir;
+  private final Map<String, String> environment = new HashMap<>();
+
+  public OfflineHarness(int games, int loaders, long latencyMillis, boolean failFirstRequests) throws IOException {
+    this.server = new FixtureServer(latencyMillis, failFirstRequests);
+    this.stateDir = Files.createTempDirectory("meta-state");
+    this.environment.put("META_MAVEN_URL", this.server.url("/maven/"));
+    this.environment.put("META_FABRIC_URL", this.server.url("/fabric/"));
+    this.environment.put("META_MINECRAFT_MANIFEST_URL", this.server.url("/mojang/version_manifest.json"));
+    this.environment.put("META_GROUP", "org.quiltmc");
+    this.environment.put("META_LOADER", "quilt-loader");
+    this.environment.put("META_INSTALLER", "quilt-installer");
+    this.environment.put("META_STATE_DIR", this.stateDir.toString());
+    this.environment.put("META_INCREMENTAL", "true");
+    this.populate(games, loaders);
+  }
+
+  public OfflineHarness set(String name, String value) {
+    this.environment.put(name, value);
+    return this;
+  }
+
+  public Meta createMeta() {
+    Config config = new Config(this.environment);
+    StateStore state = StateStore.fromConfig(config);
+
+    return new Meta(config, state, new HttpFetcher(state, config.warmCache, config.fetchConcurrency, config.fetchConcurrencyPerHost), this.bucket);
+  }
+
+  private static String gameVersion(int i) {
+    return i % 4 == 0 ? String.format("1.%d.%d", 14 + i / 40, i / 4 % 10) : String.format("%dw%02da", 19 + i / 52, i % 52 + 1);
+  }
+
+  private static String loaderVersion(int i) {
+    return String.format("0.%d.%d", 14 + i / 20, i % 20);
+  }
+
+  private void populate(int games, int loaders) {
+    String[] gameVersions = new String[games];
+    String[] mappingsVersions = new String[games];
+    String[] loaderVersions = new String[loaders];
+    JsonArray manifestVersions = new JsonArray();
+
+    for (int i = 0; i < games; ++i) {
+      gameVersions[i] = gameVersion(i);
+      mappingsVersions[i] = gameVersion(i) + "+build.1";
+    }
+
+    for (int i = games - 1; i >= 0; --i) {
+      JsonObject version = new JsonObject();
+      version.addProperty("id", gameVersions[i]);
+      version.addProperty("type", i % 4 == 0 ? "release" : "snapshot");
+      manifestVersions.add(version);
+    }
+
+    for (int i = 0; i < loaders; ++i) {
+      loaderVersions[i] = loaderVersion(i);
+      this.put(String.format("/maven/org/quiltmc/quilt-loader/%1$s/quilt-loader-%1$s.json", loaderVersions[i]), launcherMeta(i).toString());
+    }
+
+    JsonObject manifest = new JsonObject();
+    manifest.add("versions", manifestVersions);
+
+    this.put("/mojang/version_manifest.json", manifest.toString());
+    this.put("/maven/org/quiltmc/hashed/maven-metadata.xml", mavenMetadata("org.quiltmc", "hashed", gameVersions));
+    this.put("/maven/org/quiltmc/quilt-mappings/maven-metadata.xml", mavenMetadata("org.quiltmc", "quilt-mappings", mappingsVersions));
+    this.put("/maven/org/quiltmc/quilt-loader/maven-metadata.xml", mavenMetadata("org.quiltmc", "quilt-loader", loaderVersions));
+    this.put("/maven/org/quiltmc/quilt-installer/maven-metadata.xml", mavenMetadata("org.quiltmc", "quilt-installer", new String[]{"0.4.0", "0.4.1"}));
+    this.put("/fabric/net/fabricmc/intermediary/maven-metadata.xml", mavenMetadata("net.fabricmc", "intermediary", gameVersions));
+  }
+
+  public void put(String path, String contents) {
+    this.server.files.put(path, contents.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String mavenMetadata(String group, String artifact, String[] versions) {
+    StringBuilder builder = new StringBuilder()
+        .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<metadata>\n")
+        .append("  <groupId>").append(group).append("</groupId>\n")
+        .append("  <artifactId>").append(artifact).append("</artifactId>\n")
+        .append("  <versioning>\n    <versions>\n");
+
+    for (String version : versions) {
+      builder.append("      <version>").append(version).append("</version>\n");
+    }
+
+    return builder.append("    </versions>\n  </versioning>\n</metadata>\n").toString();
+  }
+
+  private static JsonObject launcherMeta(int loader) {
+    JsonArray common = new JsonArray();
+
+    for (int i = 0; i < 4; ++i) {
+      JsonObject library = new JsonObject();
+      library.addProperty("name", "org.quiltmc:library-" + i + ":0." + loader + "." + i);
+      library.addProperty("url", "https://maven.quiltmc.org/repository/release/");
+      common.add(library);
+    }
+
+    JsonObject libraries = new JsonObject();
+    libraries.add("client", new JsonArray());
+    libraries.add("common", common);
+    libraries.add("server", new JsonArray());
+
+    JsonObject mainClass = new JsonObject();
+    mainClass.addProperty("client", "org.quiltmc.loader.impl.launch.knot.KnotClient");
+    mainClass.addProperty("server", "org.quiltmc.loader.impl.launch.knot.KnotServer");
+
+    JsonObject launcherMeta = new JsonObject();
+    launcherMeta.addProperty("version", 1);
+    launcherMeta.add("libraries", libraries);
+    launcherMeta.add("mainClass", mainClass);
+
+    return launcherMeta;
+  }
+
+  @Override
+  public void close() {
+    this.server.close();
+  }
+
+  public static void main(String[] args) throws IOException {
+    int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+    int loaders = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+    long latency = args.length > 2 ? Long.parseLong(args[2]) : 20;
+    boolean failFirstRequests = args.length > 3 && Boolean.parseBoolean(args[3]);
+    int runs = args.length > 4 ? Integer.parseInt(args[4]) : 2;
+    int shards = args.length > 5 ? Integer.parseInt(args[5]) : 0;
+
+    try (OfflineHarness harness = new OfflineHarness(games, loaders, latency, failFirstRequests)) {
+      Meta meta = harness.createMeta();
+
+      for (int run = 1; run <= runs; ++run) {
+        long start = System.nanoTime();
+        APIGatewayProxyResponseEvent response = shards > 0
+            ? new LocalShardRunner(harness::createMeta, shards).run()
+            : meta.handleRequest(null, null);
+
+        System.out.printf("Run %d: status %d in %d ms, %d objects in bucket, %d requests served, %d failed%n",
+            run, response.getStatusCode(), (System.nanoTime() - start) / 1_000_000,
+            harness.bucket.objects.size(), harness.server.requests.get(), harness.server.failures.get());
+        meta.getMetrics().values().forEach((name, value) -> System.out.printf("  %-24s %,.1f%n", name, value));
+      }
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package org.quiltmc;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class PublisherTest {
+  private static byte[] bytes(String string) {
+    return string.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void skipsUnchangedAndDeletesStaleFiles() throws InterruptedException {
+    InMemoryObjectStore store = new InMemoryObjectStore();
+    store.put("v3/versions/game", bytes("[1]"), "application/json", null, null);
+    store.put("v3/versions/loader", bytes("[2]"), "application/json", null, null);
+    store.put("v3/versions/installer", bytes("[3]"), "application/json", null, null);
+    store.put("v3/versions/removed", bytes("[4]"), "application/json", null, null);
+    store.puts.set(0);
+
+    Map<String, String> files = new TreeMap<>();
+    Publisher publisher = new Publisher(store, OutputEncoding.IDENTITY, 4, Publisher.getRemoteHashes(Publisher.Diff.ETAG, store, null), files);
+
+    publisher.publish("v3/versions/game", bytes("[1]"), "application/json");
+    publisher.publish("v3/versions/loader", bytes("[2, 3]"), "application/json");
+    publisher.publish("v3/versions/installer", bytes("[3]"), "application/json");
+    publisher.finish();
+
+    assertEquals(1, store.puts.get());
+    assertEquals(1, store.deletes.get());
+    assertEquals("[2, 3]", new String(store.objects.get("v3/versions/loader"), StandardCharsets.UTF_8));
+    assertFalse(store.objects.containsKey("v3/versions/removed"));
+    assertEquals(3, files.size());
+  }
+
+  @Test
+  public void uploadsIndexesLastAndDeletesFilesMissingFromManifest() throws InterruptedException {
+    List<String> missingAtIndex = new ArrayList<>();
+    InMemoryObjectStore store = new InMemoryObjectStore() {
+      @Override
+      public CompletableFuture<Void> put(String key, byte[] contents, String contentType, String contentEncoding, String cacheControl) {
+        if (key.equals("v3/versions/loader")) {
+          for (int i = 0; i < 20; ++i) {
+            if (!this.objects.containsKey("v3/versions/loader/" + i)) {
+              missingAtIndex.add("v3/versions/loader/" + i);
+            }
+          }
+        }
+
+        return super.put(key, contents, contentType, contentEncoding, cacheControl);
+      }
+    };
+
+    // Left behind by an earlier run that failed before saving its manifest
+    for (int i = 0; i < 3; ++i) {
+      store.put("v3/versions/orphan/" + i, bytes("[]"), "application/json", null, null);
+    }
+
+    Map<String, String> files = new TreeMap<>();
+    Publisher publisher = new Publisher(store, OutputEncoding.IDENTITY, 4, Publisher.getRemoteHashes(Publisher.Diff.MANIFEST, store, null), files);
+
+    publisher.publishIndex("v3/versions/loader", bytes("[0, 1, 2]"), "application/json");
+
+    for (int i = 0; i < 20; ++i) {
+      publisher.publish("v3/versions/loader/" + i, bytes("[" + i + "]"), "application/json");
+    }
+
+    publisher.finish(false);
+
+    assertEquals(Collections.emptyList(), missingAtIndex);
+    assertEquals(24, store.objects.size());
+    assertThrows(IllegalStateException.class, () -> publisher.deleteStale(0.1));
+    assertEquals(24, store.objects.size());
+    assertEquals(3, publisher.deleteStale(0.2));
+    assertEquals(21, store.objects.size());
+    assertEquals(21, files.size());
+  }
+
+  @Test
+  public void retriesThrottledUploads() throws InterruptedException {
+    InMemoryObjectStore store = new InMemoryObjectStore();
+    store.throttle(3);
+
+    Publisher publisher = new Publisher(store, OutputEncoding.IDENTITY, 2, Publisher.getRemoteHashes(Publisher.Diff.NONE, store, null), new TreeMap<>());
+
+    for (int i = 0; i < 10; ++i) {
+      publisher.publish("v3/versions/file/" + i, bytes("[" + i + "]"), "application/json");
+    }
+
+    publisher.finish();
+
+    assertEquals(10, store.objects.size());
+  }
+
+  @Test
+  public void uploadsGzipEncodedFiles() throws InterruptedException, IOException {
+    InMemoryObjectStore store = new InMemoryObjectStore();
+    OutputEncoding encoding = new OutputEncoding("gzip", 9, "max-age=300");
+    String json = "[{\"version\": \"0.17.0\"}, {\"version\": \"0.16.1\"}]";
+
+    Publisher publisher = new Publisher(store, encoding, 2, Publisher.getRemoteHashes(Publisher.Diff.ETAG, store, null), new TreeMap<>());
+    publisher.publish("v3/versions/loader", bytes(json), "application/json");
+    publisher.finish();
+
+    // The file itself stays plain JSON, the gzip variant sits next to it
+    assertEquals(json, new String(store.objects.get("v3/versions/loader"), StandardCharsets.UTF_8));
+    assertNull(store.contentEncodings.get("v3/versions/loader"));
+
+    byte[] stored = store.objects.get("v3/versions/loader.gz");
+    assertEquals("gzip", store.contentEncodings.get("v3/versions/loader.gz"));
+    assertArrayEquals(stored, encoding.encode(bytes(json)));
+
+    try (GZIPInputStream stream = new GZIPInputStream(new ByteArrayInputStream(stored))) {
+      assertEquals(json, new String(HttpFetcher.readFully(stream), StandardCharsets.UTF_8));
+    }
+
+    // Encoded output hashes the same on the next run, so it isn't uploaded again
+    publisher = new Publisher(store, encoding, 2, Publisher.getRemoteHashes(Publisher.Diff.ETAG, store, null), new TreeMap<>());
+    publisher.publish("v3/versions/loader", bytes(json), "application/json");
+    publisher.finish();
+
+    assertEquals(2, store.puts.get());
+  }
+}
@@ -0,0 +1,52 @@
+package org.quiltmc;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class VersionTest {
+  @Test
+  public void splitsBuildNumbers() {
+    Version version = Version.parse("1.19.2+build.21");
+    assertEquals("1.19.2", version.base);
+    assertEquals("1.19.2", version.withoutBuild);
+    assertEquals("+build.", version.separator);
+    assertEquals(Integer.valueOf(21), version.build);
+
+    Version legacy = Version.parse("1.18.2.5");
+    assertEquals("1.18.2.5", legacy.base);
+    assertEquals("1.18.2", legacy.withoutBuild);
+    assertEquals(".", legacy.separator);
+    assertEquals(Integer.valueOf(5), legacy.build);
+
+    Version beta = Version.parse("0.17.0-beta.1");
+    assertEquals("0.17.0", beta.withoutBuild);
+    assertEquals(Integer.valueOf(1), beta.build);
+
+    assertNull(Version.parse("22w14a").build);
+    assertEquals("22w14a", Version.parse("22w14a").withoutBuild);
+  }
+
+  @Test
+  public void ordersSemantically() {
+    List<String> expected = Arrays.asList("0.9.0", "0.17.0-beta.2", "0.17.0-beta.10", "0.17.0", "0.17.0+build.2",
+        "0.17.0+build.10", "0.17.1", "0.100.0");
+    List<Version> versions = new ArrayList<>();
+
+    for (String version : expected) {
+      versions.add(Version.parse(version));
+    }
+
+    Collections.reverse(versions);
+    Collections.sort(versions);
+
+    List<String> sorted = new ArrayList<>();
+    versions.forEach(version -> sorted.add(version.version));
+    assertEquals(expected, sorted);
+  }
+}